@@ -7,26 +7,36 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
+import org.HdrHistogram.Histogram;
 import org.benchkit.Benchmark;
 import org.benchkit.Recorder;
+import stormpot.benchmark.LatencyHistograms;
 
 public abstract class MultiThreadedBenchmark implements Benchmark {
 
+  /**
+   * Run the runnable the given number of iterations in each of the threads,
+   * and record the latencies under the given benchmark arguments in the
+   * {@link LatencyHistograms}.
+   */
   protected void doConcurrently(
       final Runnable runnable,
       final Recorder mainRecorder,
       final ExecutorService executor,
       final int threads,
-      final int iterations) throws Exception {
+      final int iterations,
+      final Object[] args) throws Exception {
     final CountDownLatch startLatch = new CountDownLatch(1);
+    List<Histogram> histograms = new ArrayList<Histogram>();
 
-    List<Future<Recorder>> recorders = createWorkers(
-        runnable, mainRecorder, executor, threads, iterations, startLatch);
+    List<Future<Recorder>> recorders = createWorkers(runnable, mainRecorder,
+        executor, threads, iterations, startLatch, histograms);
 
     Thread.yield();
     startLatch.countDown();
 
     collectResults(mainRecorder, recorders);
+    LatencyHistograms.add(histograms, args);
   }
 
   private List<Future<Recorder>> createWorkers(
@@ -35,12 +45,15 @@ public abstract class MultiThreadedBenchmark implements Benchmark {
       final ExecutorService executor,
       final int threads,
       final int iterations,
-      final CountDownLatch startLatch) {
+      final CountDownLatch startLatch,
+      final List<Histogram> histograms) {
     List<Future<Recorder>> recorders = new ArrayList<Future<Recorder>>();
     for (int i = 0; i < threads; i++) {
       final Recorder recorder = mainRecorder.createBlankCopy();
+      final Histogram histogram = LatencyHistograms.create();
+      histograms.add(histogram);
       Callable<Recorder> worker =
-          createWorker(runnable, iterations, startLatch, recorder);
+          createWorker(runnable, iterations, startLatch, recorder, histogram);
       Future<Recorder> futureRecorder = executor.submit(worker);
       recorders.add(futureRecorder);
     }
@@ -51,7 +64,8 @@ public abstract class MultiThreadedBenchmark implements Benchmark {
       final Runnable runnable,
       final int iterations,
       final CountDownLatch startLatch,
-      final Recorder recorder) {
+      final Recorder recorder,
+      final Histogram histogram) {
     return new Callable<Recorder>() {
       @Override
       public Recorder call() throws Exception {
@@ -59,7 +73,9 @@ public abstract class MultiThreadedBenchmark implements Benchmark {
         long begin = recorder.begin();
         for (int i = 0; i < iterations; i++) {
           runnable.run();
-          begin = recorder.record(begin);
+          long end = recorder.record(begin);
+          histogram.recordValue(end - begin);
+          begin = end;
         }
         return recorder;
       }
@@ -22,6 +22,7 @@ import macros.database.XorShiftRandom;
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.HdrHistogram.Histogram;
 import org.benchkit.Benchmark;
 import org.benchkit.BenchmarkRunner;
 import org.benchkit.Param;
@@ -31,6 +32,11 @@ import org.benchkit.htmlchartsreporter.DataInterpretor;
 import org.benchkit.htmlchartsreporter.HtmlChartsReporter;
 import org.benchkit.htmlchartsreporter.LatencyHistogramChart;
 import org.benchkit.htmlchartsreporter.ThroughputChart;
+import stormpot.benchmark.CsvJsonReporter;
+import stormpot.benchmark.LatencyHistograms;
+import stormpot.benchmark.PercentileReporter;
+import stormpot.benchmark.ResultsStore;
+import stormpot.benchmark.TeeReporter;
 
 public class EventSourcingBenchmark implements Benchmark {
   
@@ -51,6 +57,7 @@ public class EventSourcingBenchmark implements Benchmark {
   }
   
   private final Random randomSource;
+  private Object[] args;
   private Fixture fixture;
   private int threads;
   private int poolSize;
@@ -66,6 +73,7 @@ public class EventSourcingBenchmark implements Benchmark {
       @Param(value = "poolSize", defaults = "10") int poolSize,
       @Param(value = "iterations", defaults = "10000") int iterations,
       @Param(value = "database", defaults = "h2") Database database) {
+    this.args = new Object[] {fixture, threads, poolSize, iterations, database};
     this.fixture = fixture;
     this.threads = threads;
     this.poolSize = poolSize;
@@ -74,7 +82,8 @@ public class EventSourcingBenchmark implements Benchmark {
     randomSource = new Random();
   }
 
-  private void runBenchmark(Recorder recorder) throws Exception {
+  private void runBenchmark(Recorder recorder, Histogram histogram)
+      throws Exception {
     XorShiftRandom prng = new XorShiftRandom(randomSource.nextInt());
     
     Thread currentThread = Thread.currentThread();
@@ -98,7 +107,9 @@ public class EventSourcingBenchmark implements Benchmark {
             "Transaction " + x + " failed for entity " + entityId);
       }
       
-      begin = recorder.record(begin);
+      long end = recorder.record(begin);
+      histogram.recordValue(end - begin);
+      begin = end;
     }
   }
 
@@ -154,10 +165,13 @@ public class EventSourcingBenchmark implements Benchmark {
     clearDatabase();
     CountDownLatch startLatch = new CountDownLatch(1);
     List<Future<Recorder>> recorders = new ArrayList<Future<Recorder>>();
+    List<Histogram> histograms = new ArrayList<Histogram>();
     for (int i = 0; i < threads; i++) {
       Recorder recorder = mainRecorder.createBlankCopy();
+      Histogram histogram = LatencyHistograms.create();
+      histograms.add(histogram);
       Future<Recorder> futureRecorder =
-          executor.submit(createWorker(startLatch, recorder));
+          executor.submit(createWorker(startLatch, recorder, histogram));
       recorders.add(futureRecorder);
     }
     Thread.yield();
@@ -165,6 +179,7 @@ public class EventSourcingBenchmark implements Benchmark {
     for (Future<Recorder> futureRecorder : recorders) {
       mainRecorder.add(futureRecorder.get());
     }
+    LatencyHistograms.add(histograms, args);
   }
 
   private void clearDatabase() throws Exception {
@@ -177,12 +192,13 @@ public class EventSourcingBenchmark implements Benchmark {
     }
   }
 
-  private Callable<Recorder> createWorker(final CountDownLatch startLatch, final Recorder recorder) {
+  private Callable<Recorder> createWorker(final CountDownLatch startLatch,
+      final Recorder recorder, final Histogram histogram) {
     return new Callable<Recorder>() {
       @Override
       public Recorder call() throws Exception {
         startLatch.await();
-        runBenchmark(recorder);
+        runBenchmark(recorder, histogram);
         return recorder;
       }
     };
@@ -202,21 +218,30 @@ public class EventSourcingBenchmark implements Benchmark {
     BasicConfigurator.configure();
     Logger.getRootLogger().setLevel(Level.OFF);
     
+    String titleFormat = "Event Sourcing [poolSize=%3$s, iterations=%4$s, database=%5$s]";
     HtmlChartsReporter chartReporter = new HtmlChartsReporter(
-        new Interpretor(), "Event Sourcing [poolSize=%3$s, iterations=%4$s, database=%5$s]");
+        new Interpretor(), titleFormat);
     chartReporter.addChartRender(new ThroughputChart("Throughput", "Threads", "Ops/Sec"));
     chartReporter.addChartRender(new LatencyHistogramChart("Latency", "Threads"));
+    CsvJsonReporter dataReporter = new CsvJsonReporter();
+    PercentileReporter percentileReporter = new PercentileReporter(
+        new Interpretor(), titleFormat);
     int iterations = BenchmarkRunner.DEFAULT_ITERATIONS;
     int warmupIterations = BenchmarkRunner.DEFAULT_WARMUP_ITERATIONS;
 
     BenchmarkRunner.run(
         EventSourcingBenchmark.class, new WarmupPrintingReporter(), 1, 3);
+    LatencyHistograms.clear();
     BenchmarkRunner.run(
-        EventSourcingBenchmark.class, chartReporter, iterations, warmupIterations);
+        EventSourcingBenchmark.class, new TeeReporter(
+            chartReporter, new ResultsStore(), dataReporter, percentileReporter),
+        iterations, warmupIterations);
     
-    String report = chartReporter.generateReport();
+    String report = percentileReporter.addTo(chartReporter.generateReport());
     File file = new File("event-sourcing.html");
     if (!file.exists()) file.createNewFile();
     Files.write(file.toPath(), report.getBytes("UTF-8"));
+    dataReporter.writeFiles("event-sourcing");
+    percentileReporter.writeFiles("event-sourcing");
   }
 }
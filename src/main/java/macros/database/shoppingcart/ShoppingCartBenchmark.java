@@ -28,6 +28,11 @@ import org.benchkit.htmlchartsreporter.DataInterpretor;
 import org.benchkit.htmlchartsreporter.HtmlChartsReporter;
 import org.benchkit.htmlchartsreporter.LatencyHistogramChart;
 import org.benchkit.htmlchartsreporter.ThroughputChart;
+import stormpot.benchmark.CsvJsonReporter;
+import stormpot.benchmark.LatencyHistograms;
+import stormpot.benchmark.PercentileReporter;
+import stormpot.benchmark.ResultsStore;
+import stormpot.benchmark.TeeReporter;
 
 public class ShoppingCartBenchmark extends MultiThreadedBenchmark {
   
@@ -47,6 +52,7 @@ public class ShoppingCartBenchmark extends MultiThreadedBenchmark {
     }
   }
   
+  private Object[] args;
   private Fixture fixture;
   private int threads;
   private int poolSize;
@@ -62,6 +68,7 @@ public class ShoppingCartBenchmark extends MultiThreadedBenchmark {
       @Param(value = "poolSize", defaults = "10") int poolSize,
       @Param(value = "iterations", defaults = "10000") int iterations,
       @Param(value = "database", defaults = "h2") Database database) {
+    this.args = new Object[] {fixture, threads, poolSize, iterations, database};
     this.fixture = fixture;
     this.threads = threads;
     this.poolSize = poolSize;
@@ -98,7 +105,7 @@ public class ShoppingCartBenchmark extends MultiThreadedBenchmark {
         work.doWork();
       }
     };
-    doConcurrently(runnable, mainRecorder, executor, threads, iterations);
+    doConcurrently(runnable, mainRecorder, executor, threads, iterations, args);
   }
 
   private void prepareDatabase() throws Exception {
@@ -142,21 +149,30 @@ public class ShoppingCartBenchmark extends MultiThreadedBenchmark {
     BasicConfigurator.configure();
     Logger.getRootLogger().setLevel(Level.OFF);
     
+    String titleFormat = "Shopping Cart [poolSize=%3$s, iterations=%4$s, database=%5$s]";
     HtmlChartsReporter chartReporter = new HtmlChartsReporter(
-        new Interpretor(), "Shopping Cart [poolSize=%3$s, iterations=%4$s, database=%5$s]");
+        new Interpretor(), titleFormat);
     chartReporter.addChartRender(new ThroughputChart("Throughput", "Threads", "Ops/Sec"));
     chartReporter.addChartRender(new LatencyHistogramChart("Latency", "Threads"));
+    CsvJsonReporter dataReporter = new CsvJsonReporter();
+    PercentileReporter percentileReporter = new PercentileReporter(
+        new Interpretor(), titleFormat);
     int iterations = BenchmarkRunner.DEFAULT_ITERATIONS;
     int warmupIterations = BenchmarkRunner.DEFAULT_WARMUP_ITERATIONS;
 
     BenchmarkRunner.run(
         ShoppingCartBenchmark.class, new WarmupPrintingReporter(), 1, 3);
+    LatencyHistograms.clear();
     BenchmarkRunner.run(
-        ShoppingCartBenchmark.class, chartReporter, iterations, warmupIterations);
+        ShoppingCartBenchmark.class, new TeeReporter(
+            chartReporter, new ResultsStore(), dataReporter, percentileReporter),
+        iterations, warmupIterations);
     
-    String report = chartReporter.generateReport();
+    String report = percentileReporter.addTo(chartReporter.generateReport());
     File file = new File("shopping-cart.html");
     if (!file.exists()) file.createNewFile();
     Files.write(file.toPath(), report.getBytes("UTF-8"));
+    dataReporter.writeFiles("shopping-cart");
+    percentileReporter.writeFiles("shopping-cart");
   }
 }
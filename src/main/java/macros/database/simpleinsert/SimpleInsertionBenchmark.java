@@ -21,6 +21,7 @@ import macros.database.Database;
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.HdrHistogram.Histogram;
 import org.benchkit.Benchmark;
 import org.benchkit.BenchmarkRunner;
 import org.benchkit.Param;
@@ -30,6 +31,11 @@ import org.benchkit.htmlchartsreporter.DataInterpretor;
 import org.benchkit.htmlchartsreporter.HtmlChartsReporter;
 import org.benchkit.htmlchartsreporter.LatencyHistogramChart;
 import org.benchkit.htmlchartsreporter.ThroughputChart;
+import stormpot.benchmark.CsvJsonReporter;
+import stormpot.benchmark.LatencyHistograms;
+import stormpot.benchmark.PercentileReporter;
+import stormpot.benchmark.ResultsStore;
+import stormpot.benchmark.TeeReporter;
 
 public class SimpleInsertionBenchmark implements Benchmark {
   
@@ -49,6 +55,7 @@ public class SimpleInsertionBenchmark implements Benchmark {
     }
   }
   
+  private Object[] args;
   private Fixture fixture;
   private int threads;
   private int poolSize;
@@ -64,6 +71,7 @@ public class SimpleInsertionBenchmark implements Benchmark {
       @Param(value = "poolSize", defaults = "10") int poolSize,
       @Param(value = "iterations", defaults = "10000") int iterations,
       @Param(value = "database", defaults = "h2") Database database) {
+    this.args = new Object[] {fixture, threads, poolSize, iterations, database};
     this.fixture = fixture;
     this.threads = threads;
     this.poolSize = poolSize;
@@ -93,10 +101,13 @@ public class SimpleInsertionBenchmark implements Benchmark {
   public void runSession(Recorder mainRecorder) throws Exception {
     clearDatabase();
     CountDownLatch startLatch = new CountDownLatch(1);
-    List<Future<Recorder>> recorders = startWorkers(mainRecorder, startLatch);
+    List<Histogram> histograms = new ArrayList<Histogram>();
+    List<Future<Recorder>> recorders =
+        startWorkers(mainRecorder, startLatch, histograms);
     Thread.yield();
     startLatch.countDown();
     collectResults(mainRecorder, recorders);
+    LatencyHistograms.add(histograms, args);
   }
 
   private void clearDatabase() throws Exception {
@@ -109,12 +120,14 @@ public class SimpleInsertionBenchmark implements Benchmark {
   }
 
   private List<Future<Recorder>> startWorkers(Recorder mainRecorder,
-      CountDownLatch startLatch) {
+      CountDownLatch startLatch, List<Histogram> histograms) {
     List<Future<Recorder>> recorders = new ArrayList<Future<Recorder>>();
     for (int i = 0; i < threads; i++) {
       Recorder recorder = mainRecorder.createBlankCopy();
+      Histogram histogram = LatencyHistograms.create();
+      histograms.add(histogram);
       Future<Recorder> futureRecorder =
-          executor.submit(createWorker(startLatch, recorder));
+          executor.submit(createWorker(startLatch, recorder, histogram));
       recorders.add(futureRecorder);
     }
     return recorders;
@@ -122,12 +135,13 @@ public class SimpleInsertionBenchmark implements Benchmark {
 
   private Callable<Recorder> createWorker(
       final CountDownLatch startLatch,
-      final Recorder recorder) {
+      final Recorder recorder,
+      final Histogram histogram) {
     return new Callable<Recorder>() {
       @Override
       public Recorder call() throws Exception {
         startLatch.await();
-        runBenchmark(recorder);
+        runBenchmark(recorder, histogram);
         return recorder;
       }
     };
@@ -141,12 +155,15 @@ public class SimpleInsertionBenchmark implements Benchmark {
     }
   }
 
-  private void runBenchmark(Recorder recorder) throws Exception {
+  private void runBenchmark(Recorder recorder, Histogram histogram)
+      throws Exception {
     String name = Thread.currentThread().getName();
     long begin = recorder.begin();
     for (int i = 0; i < iterations; i++) {
       inserter.insertLogRow(name, i);
-      begin = recorder.record(begin);
+      long end = recorder.record(begin);
+      histogram.recordValue(end - begin);
+      begin = end;
     }
   }
 
@@ -154,21 +171,31 @@ public class SimpleInsertionBenchmark implements Benchmark {
     BasicConfigurator.configure();
     Logger.getRootLogger().setLevel(Level.OFF);
     
+    String titleFormat =
+        "Simple Concurrent Insertion [poolSize=%3$s, iterations=%4$s, database=%5$s]";
     HtmlChartsReporter chartReporter = new HtmlChartsReporter(
-        new Interpretor(), "Simple Concurrent Insertion [poolSize=%3$s, iterations=%4$s, database=%5$s]");
+        new Interpretor(), titleFormat);
     chartReporter.addChartRender(new ThroughputChart("Throughput", "Threads", "Ops/Sec"));
     chartReporter.addChartRender(new LatencyHistogramChart("Latency", "Threads"));
+    CsvJsonReporter dataReporter = new CsvJsonReporter();
+    PercentileReporter percentileReporter = new PercentileReporter(
+        new Interpretor(), titleFormat);
     int iterations = BenchmarkRunner.DEFAULT_ITERATIONS;
     int warmupIterations = BenchmarkRunner.DEFAULT_WARMUP_ITERATIONS;
 
     BenchmarkRunner.run(
         SimpleInsertionBenchmark.class, new WarmupPrintingReporter(), 1, 3);
+    LatencyHistograms.clear();
     BenchmarkRunner.run(
-        SimpleInsertionBenchmark.class, chartReporter, iterations, warmupIterations);
+        SimpleInsertionBenchmark.class, new TeeReporter(
+            chartReporter, new ResultsStore(), dataReporter, percentileReporter),
+        iterations, warmupIterations);
     
-    String report = chartReporter.generateReport();
+    String report = percentileReporter.addTo(chartReporter.generateReport());
     File file = new File("simple-concurrent-insertion.html");
     if (!file.exists()) file.createNewFile();
     Files.write(file.toPath(), report.getBytes("UTF-8"));
+    dataReporter.writeFiles("simple-concurrent-insertion");
+    percentileReporter.writeFiles("simple-concurrent-insertion");
   }
 }
@@ -0,0 +1,175 @@
+package stormpot.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import stormpot.Slot;
+
+/**
+ * Describes how the pooled objects are allocated. Every {@link PoolFactory}
+ * entry allocates its objects through this, so that changes to the cost of
+ * allocation apply the same way to every pool.
+ */
+public class Allocation {
+  private long costNanos;
+  private long latencyNanos;
+  private LatencyDistribution latencyDistribution = LatencyDistribution.fixed;
+  private double failureRate;
+  private Clock clock = Clock.system;
+  private int payloadBytes;
+  private int directBufferBytes;
+  private Layout layout = Layout.unpadded;
+  private PoolMetrics metrics;
+
+  /**
+   * Set how long every allocation keeps the allocating thread busy.
+   */
+  public Allocation setCostNanos(long costNanos) {
+    this.costNanos = costNanos;
+    return this;
+  }
+
+  public long getCostNanos() {
+    return costNanos;
+  }
+
+  /**
+   * Set the mean time that every allocation waits, as if opening a
+   * connection. Unlike the cost, this does not keep the CPU busy.
+   */
+  public Allocation setLatency(
+      long latency, TimeUnit unit, LatencyDistribution distribution) {
+    this.latencyNanos = unit.toNanos(latency);
+    this.latencyDistribution = distribution;
+    return this;
+  }
+
+  public long getLatencyNanos() {
+    return latencyNanos;
+  }
+
+  public LatencyDistribution getLatencyDistribution() {
+    return latencyDistribution;
+  }
+
+  /**
+   * Set the fraction of allocations, from 0.0 to 1.0, that fail with an
+   * exception after their latency.
+   */
+  public Allocation setFailureRate(double failureRate) {
+    this.failureRate = failureRate;
+    return this;
+  }
+
+  public double getFailureRate() {
+    return failureRate;
+  }
+
+  /**
+   * Set the clock that the allocated objects use to tell their age.
+   */
+  public Allocation setClock(Clock clock) {
+    this.clock = clock;
+    return this;
+  }
+
+  public Clock getClock() {
+    return clock;
+  }
+
+  /**
+   * Set the size of the byte array that every allocated object holds.
+   */
+  public Allocation setPayloadBytes(int payloadBytes) {
+    this.payloadBytes = payloadBytes;
+    return this;
+  }
+
+  public int getPayloadBytes() {
+    return payloadBytes;
+  }
+
+  /**
+   * Allocate {@link BufferPoolable} objects, with direct buffers of the
+   * given size, instead of plain {@link MyPoolable} objects.
+   */
+  public Allocation setDirectBufferBytes(int directBufferBytes) {
+    this.directBufferBytes = directBufferBytes;
+    return this;
+  }
+
+  public int getDirectBufferBytes() {
+    return directBufferBytes;
+  }
+
+  /**
+   * Set whether the allocated objects are padded against false sharing.
+   * Does not apply to {@link BufferPoolable} objects.
+   */
+  public Allocation setLayout(Layout layout) {
+    this.layout = layout;
+    return this;
+  }
+
+  public Layout getLayout() {
+    return layout;
+  }
+
+  /**
+   * Set the metrics that count the allocations and deallocations.
+   */
+  public Allocation setMetrics(PoolMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  public PoolMetrics getMetrics() {
+    return metrics;
+  }
+
+  public MyPoolable allocate(Slot slot) throws Exception {
+    beginAllocation();
+    if (directBufferBytes > 0) {
+      return new BufferPoolable(slot, clock, directBufferBytes);
+    }
+    return layout.create(slot, clock, payloadBytes);
+  }
+
+  /**
+   * Allocate an object that is not part of any pool, for the
+   * {@link PoolFactory#nopool} entry. It costs the same as a pooled
+   * allocation, but skips the bookkeeping that only pooled objects need.
+   */
+  public MyPoolable allocateUnpooled() throws Exception {
+    beginAllocation();
+    if (directBufferBytes > 0) {
+      return new BufferPoolable(directBufferBytes);
+    }
+    return layout.createUnpooled(payloadBytes);
+  }
+
+  private void beginAllocation() throws Exception {
+    if (costNanos > 0) {
+      BusyWork.spin(costNanos);
+    }
+    if (latencyNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(latencyDistribution.sample(latencyNanos));
+    }
+    if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+      throw new Exception("Simulated allocation failure");
+    }
+    if (metrics != null) {
+      metrics.recordAllocation();
+    }
+  }
+
+  /**
+   * Called by the pools when they let go of an object, which is mostly
+   * because it expired.
+   */
+  public void deallocate(MyPoolable obj) {
+    if (metrics != null) {
+      metrics.recordDeallocation();
+    }
+  }
+}
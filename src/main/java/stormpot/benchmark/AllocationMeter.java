@@ -0,0 +1,26 @@
+package stormpot.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Reads how many bytes the current thread has allocated, so the benchmarks
+ * can tell how much garbage each pool produces per claim and release.
+ */
+public final class AllocationMeter {
+  private static final ThreadMXBean THREADS =
+      (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private AllocationMeter() {
+  }
+
+  public static long threadAllocatedBytes() {
+    return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  public static void print(Object label, long allocatedBytes, long ops) {
+    System.out.printf("%s: %.2f bytes/op allocated\n",
+        label, allocatedBytes / (double) ops);
+  }
+}
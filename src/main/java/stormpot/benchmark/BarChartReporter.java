@@ -0,0 +1,155 @@
+package stormpot.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.benchkit.Recorder;
+import org.benchkit.Reporter;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+
+/**
+ * Charts one value of every configuration as a bar, one chart for every
+ * title, with a bar for every series and x-value. The subclasses say what
+ * the value is.
+ * <p>
+ * The charts are inline SVG, and are added to the report like the ones of
+ * the {@link PercentileReporter}.
+ */
+public abstract class BarChartReporter implements Reporter {
+  private static final int WIDTH = 900;
+  private static final int HEIGHT = 450;
+  private static final int LEFT = 100;
+  private static final int RIGHT = 250;
+  private static final int TOP = 40;
+  private static final int BOTTOM = 40;
+
+  private final DataInterpretor interpretor;
+  private final String titleFormat;
+  private final String valueFormat;
+  private final Map<String, Map<String, Map<Comparable<Object>, Double>>> charts =
+      new LinkedHashMap<String, Map<String, Map<Comparable<Object>, Double>>>();
+
+  /**
+   * The title format is followed by the chart name in the titles, and the
+   * value format formats the values on the y-axis, like "%,.0f ops/s".
+   */
+  protected BarChartReporter(
+      DataInterpretor interpretor, String titleFormat, String valueFormat) {
+    this.interpretor = interpretor;
+    this.titleFormat = titleFormat;
+    this.valueFormat = valueFormat;
+  }
+
+  /**
+   * The name of the charts, added to the end of their titles.
+   */
+  protected abstract String chartName();
+
+  /**
+   * The value of the configuration with the given arguments, or null if it
+   * has no bar.
+   */
+  protected abstract Double valueOf(Object[] args, Recorder recorder);
+
+  @Override
+  public synchronized void report(String name, Object[] args, Recorder recorder) {
+    Double value = valueOf(args, recorder);
+    if (value == null) {
+      return;
+    }
+    String title = String.format(titleFormat, args) + " " + chartName();
+    Map<String, Map<Comparable<Object>, Double>> series = charts.get(title);
+    if (series == null) {
+      series = new LinkedHashMap<String, Map<Comparable<Object>, Double>>();
+      charts.put(title, series);
+    }
+    String seriesName = interpretor.getSeriesName(args);
+    Map<Comparable<Object>, Double> bars = series.get(seriesName);
+    if (bars == null) {
+      bars = new LinkedHashMap<Comparable<Object>, Double>();
+      series.put(seriesName, bars);
+    }
+    bars.put(interpretor.getXvalue(args), value);
+  }
+
+  /**
+   * Add the charts to the end of the body of the given HTML report.
+   */
+  public String addTo(String report) {
+    return PercentileReporter.insertBeforeBody(report, generateCharts());
+  }
+
+  public synchronized String generateCharts() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, Map<String, Map<Comparable<Object>, Double>>> chart :
+        charts.entrySet()) {
+      appendChart(sb, chart.getKey(), chart.getValue());
+    }
+    return sb.toString();
+  }
+
+  private void appendChart(StringBuilder sb, String title,
+      Map<String, Map<Comparable<Object>, Double>> series) {
+    List<Comparable<Object>> xvalues = new ArrayList<Comparable<Object>>();
+    double max = 1;
+    for (Map<Comparable<Object>, Double> bars : series.values()) {
+      for (Map.Entry<Comparable<Object>, Double> bar : bars.entrySet()) {
+        if (!xvalues.contains(bar.getKey())) {
+          xvalues.add(bar.getKey());
+        }
+        max = Math.max(max, bar.getValue());
+      }
+    }
+    int plotWidth = WIDTH - LEFT - RIGHT;
+    int plotHeight = HEIGHT - TOP - BOTTOM;
+    double groupWidth = plotWidth / (double) xvalues.size();
+    double barWidth = groupWidth * 0.8 / series.size();
+
+    sb.append("<div class=\"bar-chart\"><svg xmlns=\"http://www.w3.org/2000/svg\"");
+    sb.append(" width=\"").append(WIDTH).append("\" height=\"").append(HEIGHT);
+    sb.append("\" font-family=\"sans-serif\" font-size=\"12\">\n");
+    sb.append("<text x=\"").append(WIDTH / 2).append("\" y=\"20\"");
+    sb.append(" text-anchor=\"middle\" font-size=\"14\">");
+    sb.append(PercentileReporter.escape(title)).append("</text>\n");
+
+    for (int i = 0; i <= 4; i++) {
+      double y = TOP + plotHeight - plotHeight * i / 4.0;
+      sb.append(String.format(Locale.ROOT,
+          "<line x1=\"%d\" y1=\"%.1f\" x2=\"%d\" y2=\"%.1f\" stroke=\"#ddd\"/>\n",
+          LEFT, y, LEFT + plotWidth, y));
+      sb.append(String.format(Locale.ROOT,
+          "<text x=\"%d\" y=\"%.1f\" text-anchor=\"end\">%s</text>\n",
+          LEFT - 6, y + 4, String.format(Locale.ROOT, valueFormat, max * i / 4.0)));
+    }
+    for (int x = 0; x < xvalues.size(); x++) {
+      sb.append(String.format(Locale.ROOT,
+          "<text x=\"%.1f\" y=\"%d\" text-anchor=\"middle\">%s</text>\n",
+          LEFT + groupWidth * (x + 0.5), TOP + plotHeight + 16,
+          PercentileReporter.escape(String.valueOf(xvalues.get(x)))));
+    }
+
+    int i = 0;
+    for (Map.Entry<String, Map<Comparable<Object>, Double>> bars : series.entrySet()) {
+      String color = PercentileReporter.color(i);
+      for (Map.Entry<Comparable<Object>, Double> bar : bars.getValue().entrySet()) {
+        double x = LEFT + groupWidth * (xvalues.indexOf(bar.getKey()) + 0.1)
+            + barWidth * i;
+        double height = plotHeight * bar.getValue() / max;
+        sb.append(String.format(Locale.ROOT,
+            "<rect x=\"%.1f\" y=\"%.1f\" width=\"%.1f\" height=\"%.1f\" fill=\"%s\"/>\n",
+            x, TOP + plotHeight - height, barWidth, height, color));
+      }
+      int legendY = TOP + 10 + i * 16;
+      sb.append(String.format(Locale.ROOT,
+          "<rect x=\"%d\" y=\"%d\" width=\"10\" height=\"10\" fill=\"%s\"/>\n",
+          LEFT + plotWidth + 15, legendY - 9, color));
+      sb.append(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%d\">%s</text>\n",
+          LEFT + plotWidth + 30, legendY, PercentileReporter.escape(bars.getKey())));
+      i++;
+    }
+    sb.append("</svg></div>\n");
+  }
+}
@@ -0,0 +1,39 @@
+package stormpot.benchmark;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Implements the batch operations of the {@link PoolFacade} by claiming and
+ * releasing one object at a time, for the pools that have no batch API of
+ * their own. A claim that times out gives back the objects claimed so far
+ * and fails the whole batch.
+ */
+public abstract class BasePoolFacade implements PoolFacade {
+
+  @Override
+  public void claimBatch(int n, Object[] out) throws Exception {
+    for (int i = 0; i < n; i++) {
+      Object obj;
+      try {
+        obj = claim();
+      } catch (Exception e) {
+        releaseBatch(out, i);
+        throw e;
+      }
+      if (obj == null) {
+        releaseBatch(out, i);
+        throw new TimeoutException(
+            "Claim timed out after " + i + " of " + n + " objects in the batch");
+      }
+      out[i] = obj;
+    }
+  }
+
+  @Override
+  public void releaseBatch(Object[] objs, int n) throws Exception {
+    for (int i = 0; i < n; i++) {
+      release(objs[i]);
+      objs[i] = null;
+    }
+  }
+}
@@ -0,0 +1,202 @@
+package stormpot.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.benchkit.Benchmark;
+import org.benchkit.BenchmarkRunner;
+import org.benchkit.Param;
+import org.benchkit.PrintingReporter;
+import org.benchkit.Recorder;
+import org.benchkit.WarmupPrintingReporter;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+import org.benchkit.htmlchartsreporter.HtmlChartsReporter;
+import org.benchkit.htmlchartsreporter.LatencyHistogramChart;
+import org.benchkit.htmlchartsreporter.ThroughputChart;
+
+/**
+ * Workers claim a batch of objects, and then release the whole batch.
+ * The recorded latency is that of the claim and release of one batch,
+ * and the amortized claim cost per object is printed after each session.
+ * <p>
+ * The default pool size is large enough that the workers cannot deadlock
+ * by each holding a partial batch, but small enough that the largest
+ * batches will have to wait for objects.
+ */
+public class BatchBenchmark implements Benchmark {
+  private static final int ITERATIONS = 1000 * 1000;
+
+  private final Object[] args;
+  private final PoolFactory factory;
+  private final int batchSize;
+  private final int threads;
+  private final int poolSize;
+  private ExecutorService executor;
+  private PoolFacade pool;
+
+  public BatchBenchmark(
+      @Param(value = "pools", defaults = "stack,generic,queue,blaze,tlcache,furious,ring,clq,deque") PoolFactory factory,
+      @Param(value = "batchSize", defaults = "1,2,4,8") int batchSize,
+      @Param(value = "threads", defaults = "1,2,4") int threads,
+      @Param(value = "poolSize", defaults = "32") int poolSize) {
+    this.args = new Object[] {factory, batchSize, threads, poolSize};
+    this.factory = factory;
+    this.batchSize = batchSize;
+    this.threads = threads;
+    this.poolSize = poolSize;
+  }
+
+  @Override
+  public void setUp() {
+    if (threads * (batchSize - 1) >= poolSize) {
+      throw new IllegalArgumentException(
+          "A pool size of " + poolSize + " can deadlock with " + threads +
+          " threads claiming batches of " + batchSize);
+    }
+    executor = Executors.newFixedThreadPool(threads);
+    pool = factory.create(poolSize, 1000);
+  }
+
+  @Override
+  public void runSession(Recorder recorder) throws Exception {
+    CountDownLatch startLatch = new CountDownLatch(1);
+    CountDownLatch endLatch = new CountDownLatch(threads);
+    AtomicLong claimNanos = new AtomicLong();
+    List<Recorder> subRecorders = new ArrayList<Recorder>();
+    List<Histogram> histograms = new ArrayList<Histogram>();
+
+    for (int i = 0; i < threads; i++) {
+      Recorder subRecorder = recorder.createBlankCopy();
+      subRecorders.add(subRecorder);
+      Worker worker = new Worker(
+          pool, batchSize, startLatch, endLatch, subRecorder, claimNanos);
+      histograms.add(worker.getHistogram());
+      executor.execute(worker);
+    }
+
+    startLatch.countDown();
+    endLatch.await();
+
+    for (Recorder subRecorder : subRecorders) {
+      recorder.add(subRecorder);
+    }
+    LatencyHistograms.add(histograms, args);
+
+    long objects = (long) ITERATIONS * batchSize * threads;
+    System.out.printf("%s batchSize=%s threads=%s: %.1f ns/object amortized claim\n",
+        factory, batchSize, threads, claimNanos.get() / (double) objects);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    factory.shutdown(pool);
+    executor.shutdown();
+  }
+
+  public static class Worker implements Runnable {
+    private final PoolFacade pool;
+    private final int batchSize;
+    private final CountDownLatch startLatch;
+    private final CountDownLatch endLatch;
+    private final Recorder recorder;
+    private final AtomicLong claimNanos;
+    private final Histogram histogram;
+
+    public Worker(PoolFacade pool, int batchSize, CountDownLatch startLatch,
+        CountDownLatch endLatch, Recorder recorder, AtomicLong claimNanos) {
+      this.pool = pool;
+      this.batchSize = batchSize;
+      this.startLatch = startLatch;
+      this.endLatch = endLatch;
+      this.recorder = recorder;
+      this.claimNanos = claimNanos;
+      this.histogram = LatencyHistograms.create();
+    }
+
+    @Override
+    public void run() {
+      Object[] batch = new Object[batchSize];
+      long claimTime = 0;
+      try {
+        startLatch.await();
+        long start = recorder.begin();
+        for (int i = 0; i < ITERATIONS; i++) {
+          long claimStart = System.nanoTime();
+          pool.claimBatch(batchSize, batch);
+          claimTime += System.nanoTime() - claimStart;
+          pool.releaseBatch(batch, batchSize);
+          long end = recorder.record(start);
+          histogram.recordValue(end - start);
+          start = end;
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+      claimNanos.addAndGet(claimTime);
+      endLatch.countDown();
+    }
+
+    public Histogram getHistogram() {
+      return histogram;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String titleFormat = "Batch Claim Benchmark [threads=%3$s, poolSize=%4$s]";
+    HtmlChartsReporter chartReporter = new HtmlChartsReporter(
+        new Interpretor(), titleFormat);
+    chartReporter.addChartRender(new ThroughputChart("Throughput", "Batch size", "Batches/Sec"));
+    chartReporter.addChartRender(new LatencyHistogramChart("Latency Histogram", "Batch size"));
+    PrintingReporter printingReporter = new PrintingReporter();
+    WarmupPrintingReporter warmupReporter = new WarmupPrintingReporter();
+    ResultsStore resultsStore = new ResultsStore();
+    CsvJsonReporter dataReporter = new CsvJsonReporter();
+    PercentileReporter percentileReporter = new PercentileReporter(
+        new Interpretor(), titleFormat);
+
+    // Pre-heat the lot:
+    System.out.println("## Warmup");
+    BenchmarkRunner.run(
+        BatchBenchmark.class,
+        warmupReporter, 4, 0);
+
+    // The real run:
+    System.out.println("## Benchmark");
+    LatencyHistograms.clear();
+    BenchmarkRunner.run(
+        BatchBenchmark.class,
+        printingReporter,
+        new TeeReporter(chartReporter, resultsStore, dataReporter, percentileReporter),
+        5, 0);
+
+    String report = percentileReporter.addTo(chartReporter.generateReport());
+    File file = new File("batch-results.html");
+    if (!file.exists()) file.createNewFile();
+    Files.write(file.toPath(), report.getBytes("UTF-8"));
+    dataReporter.writeFiles("batch-results");
+    percentileReporter.writeFiles("batch-results");
+  }
+
+  private static final class Interpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Batch Claim Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[1];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return String.valueOf(args[0]);
+    }
+  }
+}
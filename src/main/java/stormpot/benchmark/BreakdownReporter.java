@@ -0,0 +1,64 @@
+package stormpot.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.benchkit.Recorder;
+import org.benchkit.Reporter;
+
+/**
+ * Passes the {@link LatencyHistograms} that a benchmark filed under the
+ * arguments of a configuration plus one more, like a worker index or the
+ * phase of a session, on to the given reporters, with that extra argument
+ * appended. This way, every part of a configuration shows up as a series of
+ * its own, next to the configuration as a whole.
+ * <p>
+ * The recorder measured the configuration as a whole, so its throughput is
+ * not that of any one part. The reporters get a null recorder instead, and
+ * the reporters that read recorders, through {@link RecorderData}, leave
+ * the recorder measurements out of the rows of the parts.
+ */
+public class BreakdownReporter implements Reporter {
+  private final Reporter[] reporters;
+
+  public BreakdownReporter(Reporter... reporters) {
+    this.reporters = reporters;
+  }
+
+  /**
+   * The arguments of a configuration with the given part appended, for
+   * filing the histograms of that part.
+   */
+  public static Object[] partOf(Object[] args, Object part) {
+    Object[] partArgs = new Object[args.length + 1];
+    System.arraycopy(args, 0, partArgs, 0, args.length);
+    partArgs[args.length] = part;
+    return partArgs;
+  }
+
+  @Override
+  public void report(String name, Object[] args, Recorder recorder) {
+    List<List<Object>> parts = new ArrayList<List<Object>>();
+    for (List<Object> key : LatencyHistograms.getAll(args).keySet()) {
+      if (key.size() == args.length + 1) {
+        parts.add(key);
+      }
+    }
+    Collections.sort(parts, new Comparator<List<Object>>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public int compare(List<Object> a, List<Object> b) {
+        Object partA = a.get(a.size() - 1);
+        Object partB = b.get(b.size() - 1);
+        return ((Comparable<Object>) partA).compareTo(partB);
+      }
+    });
+    for (List<Object> part : parts) {
+      for (Reporter reporter : reporters) {
+        reporter.report(name, part.toArray(), null);
+      }
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package stormpot.benchmark;
+
+import java.nio.ByteBuffer;
+
+import stormpot.Slot;
+
+/**
+ * A pooled object that holds a direct {@link ByteBuffer}, like the buffers
+ * we pool for file and network I/O. Direct buffers are expensive to
+ * allocate, and their memory is only freed once the garbage collector gets
+ * around to them.
+ */
+public class BufferPoolable extends MyPoolable {
+  private final ByteBuffer buffer;
+
+  public BufferPoolable(Slot slot, Clock clock, int bufferBytes) {
+    super(slot, clock);
+    this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+  }
+
+  BufferPoolable(int bufferBytes) {
+    super(0);
+    this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+  }
+
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+}
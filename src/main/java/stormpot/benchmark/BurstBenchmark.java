@@ -0,0 +1,255 @@
+package stormpot.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.benchkit.Benchmark;
+import org.benchkit.BenchmarkRunner;
+import org.benchkit.Param;
+import org.benchkit.PrintingReporter;
+import org.benchkit.Recorder;
+import org.benchkit.WarmupPrintingReporter;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+import org.benchkit.htmlchartsreporter.HtmlChartsReporter;
+import org.benchkit.htmlchartsreporter.LatencyHistogramChart;
+import org.benchkit.htmlchartsreporter.ThroughputChart;
+
+/**
+ * Workers claim and release objects as fast as they can in bursts, and
+ * sleep in between. Every session has a number of cycles of one burst and
+ * one idle period, with all workers bursting at the same time.
+ * <p>
+ * The first claims of every burst are reported apart from the rest, since
+ * they show what the pool did while it was idle: whether it parked its
+ * threads, let its objects expire, or reallocated them in the background.
+ */
+public class BurstBenchmark implements Benchmark {
+  private static final int CYCLES = 5;
+  // The claims at the start of every burst that count as "first claims".
+  private static final int FIRST_CLAIMS = 10;
+
+  private final Object[] args;
+  private final PoolFactory factory;
+  private final long burstMillis;
+  private final long idleMillis;
+  private final int burstThreads;
+  private ExecutorService executor;
+  private PoolFacade pool;
+
+  public BurstBenchmark(
+      @Param(value = "pools", defaults = "stack,generic,queue,blaze,tlcache,furious,ring,clq,deque") PoolFactory factory,
+      @Param(value = "burstMillis", defaults = "10,100") long burstMillis,
+      @Param(value = "idleMillis", defaults = "100,1000") long idleMillis,
+      @Param(value = "burstThreads", defaults = "4") int burstThreads) {
+    this.args = new Object[] {factory, burstMillis, idleMillis, burstThreads};
+    this.factory = factory;
+    this.burstMillis = burstMillis;
+    this.idleMillis = idleMillis;
+    this.burstThreads = burstThreads;
+  }
+
+  @Override
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(burstThreads);
+    pool = factory.create(10, 1000);
+  }
+
+  @Override
+  public void runSession(Recorder recorder) throws Exception {
+    CountDownLatch startLatch = new CountDownLatch(1);
+    CountDownLatch endLatch = new CountDownLatch(burstThreads);
+    List<Recorder> subRecorders = new ArrayList<Recorder>();
+    List<Worker> workers = new ArrayList<Worker>();
+
+    long sessionStart = System.nanoTime();
+    for (int i = 0; i < burstThreads; i++) {
+      Recorder subRecorder = recorder.createBlankCopy();
+      subRecorders.add(subRecorder);
+      Worker worker = new Worker(pool, sessionStart,
+          TimeUnit.MILLISECONDS.toNanos(burstMillis),
+          TimeUnit.MILLISECONDS.toNanos(idleMillis),
+          startLatch, endLatch, subRecorder);
+      workers.add(worker);
+      executor.execute(worker);
+    }
+
+    startLatch.countDown();
+    endLatch.await();
+
+    for (Recorder subRecorder : subRecorders) {
+      recorder.add(subRecorder);
+    }
+    Histogram first = LatencyHistograms.create();
+    Histogram steady = LatencyHistograms.create();
+    for (Worker worker : workers) {
+      first.add(worker.first);
+      steady.add(worker.steady);
+    }
+    LatencyHistograms.add(Arrays.asList(first, steady), args);
+    LatencyHistograms.add(Arrays.asList(first), BreakdownReporter.partOf(args, "first"));
+    LatencyHistograms.add(Arrays.asList(steady), BreakdownReporter.partOf(args, "steady"));
+    System.out.printf("%s burst/idle=%s/%s ms threads=%s:\n",
+        factory, burstMillis, idleMillis, burstThreads);
+    printPercentiles("first claims", first);
+    printPercentiles("steady state", steady);
+  }
+
+  private static void printPercentiles(String label, Histogram latencies) {
+    if (latencies.getTotalCount() == 0) {
+      System.out.printf("  %s: no claims\n", label);
+      return;
+    }
+    System.out.printf("  %s: p50 %s ns, p99 %s ns, max %s ns\n", label,
+        latencies.getValueAtPercentile(50.0),
+        latencies.getValueAtPercentile(99.0),
+        latencies.getMaxValue());
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    factory.shutdown(pool);
+    executor.shutdown();
+  }
+
+  public static class Worker implements Runnable {
+    private final PoolFacade pool;
+    private final long sessionStart;
+    private final long burstNanos;
+    private final long idleNanos;
+    private final CountDownLatch startLatch;
+    private final CountDownLatch endLatch;
+    private final Recorder recorder;
+    private final Histogram first;
+    private final Histogram steady;
+
+    public Worker(PoolFacade pool, long sessionStart, long burstNanos,
+        long idleNanos, CountDownLatch startLatch, CountDownLatch endLatch,
+        Recorder recorder) {
+      this.pool = pool;
+      this.sessionStart = sessionStart;
+      this.burstNanos = burstNanos;
+      this.idleNanos = idleNanos;
+      this.startLatch = startLatch;
+      this.endLatch = endLatch;
+      this.recorder = recorder;
+      this.first = LatencyHistograms.create();
+      this.steady = LatencyHistograms.create();
+    }
+
+    @Override
+    public void run() {
+      try {
+        startLatch.await();
+        recorder.begin();
+        for (int cycle = 0; cycle < CYCLES; cycle++) {
+          // The idle period comes first, so even the first burst finds the
+          // pool after a quiet spell.
+          long burstStart = sessionStart + cycle * (burstNanos + idleNanos) + idleNanos;
+          long burstEnd = burstStart + burstNanos;
+          TimeUnit.NANOSECONDS.sleep(burstStart - System.nanoTime());
+          int claims = 0;
+          long start = System.nanoTime();
+          while (start - burstEnd < 0) {
+            pool.release(pool.claim());
+            long end = recorder.record(start);
+            if (claims < FIRST_CLAIMS) {
+              first.recordValue(end - start);
+            } else {
+              steady.recordValue(end - start);
+            }
+            claims++;
+            start = end;
+          }
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+      endLatch.countDown();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String titleFormat = "Burst Benchmark [burstMillis=%2$s, burstThreads=%4$s]";
+    HtmlChartsReporter chartReporter = new HtmlChartsReporter(
+        new Interpretor(), titleFormat);
+    chartReporter.addChartRender(new ThroughputChart("Throughput", "Idle (ms)", "Ops/Sec"));
+    chartReporter.addChartRender(new LatencyHistogramChart("Latency Histograms", "Idle (ms)"));
+    PrintingReporter printingReporter = new PrintingReporter();
+    WarmupPrintingReporter warmupReporter = new WarmupPrintingReporter();
+    ResultsStore resultsStore = new ResultsStore();
+    CsvJsonReporter dataReporter = new CsvJsonReporter();
+    // The first claims and the steady state are charted and exported as
+    // series of their own, since merged they hide what the pool did while
+    // it was idle.
+    PercentileReporter percentileReporter = new PercentileReporter(
+        new PhaseInterpretor(), titleFormat);
+    BreakdownReporter phaseReporter = new BreakdownReporter(
+        resultsStore, dataReporter, percentileReporter);
+
+    // Pre-heat the lot:
+    System.out.println("## Warmup");
+    BenchmarkRunner.run(
+        BurstBenchmark.class,
+        warmupReporter, 1, 0);
+
+    // The real run:
+    System.out.println("## Benchmark");
+    LatencyHistograms.clear();
+    BenchmarkRunner.run(
+        BurstBenchmark.class,
+        printingReporter,
+        new TeeReporter(chartReporter, resultsStore, dataReporter, phaseReporter),
+        5, 0);
+
+    String report = percentileReporter.addTo(chartReporter.generateReport());
+    File file = new File("burst-results.html");
+    if (!file.exists()) file.createNewFile();
+    Files.write(file.toPath(), report.getBytes("UTF-8"));
+    dataReporter.writeFiles("burst-results");
+    percentileReporter.writeFiles("burst-results");
+  }
+
+  private static final class Interpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Burst Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[2];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return String.valueOf(args[0]);
+    }
+  }
+
+  /**
+   * A series for every pool and phase: the first claims of the bursts, or
+   * the steady state.
+   */
+  private static final class PhaseInterpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Burst Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[2];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return args[0] + " " + args[4];
+    }
+  }
+}
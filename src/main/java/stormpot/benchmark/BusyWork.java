@@ -0,0 +1,17 @@
+package stormpot.benchmark;
+
+public final class BusyWork {
+  private BusyWork() {
+  }
+
+  /**
+   * Keep the CPU busy for the given number of nanoseconds, as if doing some
+   * work. Sleeping is too coarse for the short durations we need.
+   */
+  public static void spin(long nanos) {
+    long deadline = System.nanoTime() + nanos;
+    while (System.nanoTime() - deadline < 0) {
+      // Spin.
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package stormpot.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where {@link MyPoolable} gets the time from, when it is allocated and when
+ * the pools check if it has expired. Reading the clock is part of what the
+ * benchmarks measure, so the different sources let us tell the cost of the
+ * pool apart from the cost of the clock.
+ */
+public enum Clock {
+  system {
+    @Override
+    public long currentTimeMillis() {
+      return System.currentTimeMillis();
+    }
+  },
+  /**
+   * Reads a volatile field that a background thread updates every
+   * millisecond. Cheap to read, but only as precise as the ticker.
+   */
+  cached {
+    @Override
+    public long currentTimeMillis() {
+      return Ticker.now;
+    }
+  },
+  nano {
+    @Override
+    public long currentTimeMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+  };
+
+  public abstract long currentTimeMillis();
+
+  /**
+   * The ticker thread is started the first time the cached clock is read.
+   */
+  private static final class Ticker implements Runnable {
+    private static volatile long now = System.currentTimeMillis();
+
+    static {
+      Thread thread = new Thread(new Ticker(), "cached-clock-ticker");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    @Override
+    public void run() {
+      for (;;) {
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          return;
+        }
+        now = System.currentTimeMillis();
+      }
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package stormpot.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.benchkit.Benchmark;
+import org.benchkit.Param;
+import org.benchkit.Recorder;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+
+/**
+ * The {@link MultiThreadedBenchmark} workload, with the pooled objects
+ * telling their age by each of the {@link Clock} sources.
+ * <p>
+ * Every configuration runs in its own JVM, through the
+ * {@link ForkedBenchmarkRunner}. In a shared JVM, the clock reads would go
+ * megamorphic after the first clock, and distort the very cost we compare.
+ * <p>
+ * The Stormpot pools check expiration with their own clock, so the clock
+ * only makes a difference to them where the facade checks the age itself.
+ */
+public class ClockBenchmark implements Benchmark {
+  private final Object[] args;
+  private final PoolFactory factory;
+  private final Clock clock;
+  private final int threads;
+  private ExecutorService executor;
+  private PoolFacade pool;
+
+  public ClockBenchmark(
+      @Param(value = "pools", defaults = "stack,generic,queue,blaze,tlcache,furious,ring,clq,deque") PoolFactory factory,
+      @Param(value = "clock", defaults = "system,cached,nano") Clock clock,
+      @Param(value = "threads", defaults = "1,4") int threads) {
+    this.args = new Object[] {factory, clock, threads};
+    this.factory = factory;
+    this.clock = clock;
+    this.threads = threads;
+  }
+
+  @Override
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(threads);
+    pool = factory.create(10, 1000, new Allocation().setClock(clock));
+  }
+
+  @Override
+  public void runSession(Recorder recorder) throws Exception {
+    MultiThreadedBenchmark.runWorkers(pool, executor, threads, recorder, args);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    factory.shutdown(pool);
+    executor.shutdown();
+  }
+
+  public static void main(String[] args) throws Exception {
+    // Every clock in its own JVM, with its own warmup.
+    ReportingRunner.runForked(ClockBenchmark.class, new Interpretor(),
+        "Clock Benchmark [threads=%3$s]", "Clock", "clock-results");
+  }
+
+  private static final class Interpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Clock Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[1];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return String.valueOf(args[0]);
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package stormpot.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares a run in the results directory against a baseline run, and
+ * flags the measurements that got worse by more than a threshold, and by a
+ * Welch's t-test at the 5% level. The test needs more than one report of a
+ * benchmark configuration in both runs, and some variance; changes without
+ * those are reported as untested, and never count as regressions.
+ * <p>
+ * Usage: <code>CompareResults &lt;baseline run&gt; [&lt;run&gt;
+ * [&lt;threshold percent&gt;]]</code>. The run defaults to the latest one,
+ * and the threshold to 5%. Exits with status 1 when there are regressions.
+ * <p>
+ * Whether a measurement is better higher or lower is guessed from its
+ * name. Throughput-like names ("ops", "throughput", "perSec", "rate") are
+ * better higher, and latency-like names ("latency", "time", "nanos",
+ * "millis", "wait") are better lower. Other measurements are reported when
+ * they change, but never count as regressions.
+ */
+public class CompareResults {
+  // Two-sided critical values of Student's t at the 5% level, by degrees
+  // of freedom from 1 to 30. Above that, the normal distribution will do.
+  private static final double[] T_CRITICAL = {
+      12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+      2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+      2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println(
+          "Usage: CompareResults <baseline run> [<run> [<threshold percent>]]");
+      System.exit(2);
+    }
+    File directory = ResultsStore.directory();
+    String baselineRun = args[0];
+    String run = args.length > 1 ? args[1] : latestRun(directory);
+    double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 5.0;
+
+    Map<String, Map<String, List<Double>>> baseline =
+        samples(ResultsStore.load(directory, baselineRun));
+    Map<String, Map<String, List<Double>>> current =
+        samples(ResultsStore.load(directory, run));
+
+    System.out.printf("Comparing run %s against baseline %s, threshold %s%%\n",
+        run, baselineRun, threshold);
+    int regressions = 0;
+    for (Map.Entry<String, Map<String, List<Double>>> configuration : current.entrySet()) {
+      Map<String, List<Double>> baselineMetrics = baseline.get(configuration.getKey());
+      if (baselineMetrics == null) {
+        System.out.printf("  %s: not in the baseline\n", configuration.getKey());
+        continue;
+      }
+      for (Map.Entry<String, List<Double>> metric : configuration.getValue().entrySet()) {
+        List<Double> before = baselineMetrics.get(metric.getKey());
+        if (before == null) {
+          continue;
+        }
+        if (compare(configuration.getKey(), metric.getKey(),
+            before, metric.getValue(), threshold)) {
+          regressions++;
+        }
+      }
+    }
+    System.out.printf("%s regressions\n", regressions);
+    if (regressions > 0) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Print the change in the measurement if it is over the threshold, and
+   * return true if it is a regression.
+   */
+  private static boolean compare(String configuration, String metric,
+      List<Double> before, List<Double> after, double threshold) {
+    double meanBefore = mean(before);
+    double meanAfter = mean(after);
+    if (meanBefore == 0) {
+      return false;
+    }
+    double change = (meanAfter - meanBefore) / meanBefore * 100;
+    if (Math.abs(change) < threshold) {
+      return false;
+    }
+    int direction = direction(metric);
+    String verdict;
+    String test;
+    boolean regression = false;
+    if (before.size() < 2 || after.size() < 2) {
+      // A single report has no variance to test the difference against.
+      verdict = "untested";
+      test = "insufficient samples";
+    } else if (variance(before) + variance(after) == 0) {
+      verdict = "untested";
+      test = "no variance";
+    } else if (!isSignificant(before, after)) {
+      verdict = "noise";
+      test = "not significant";
+    } else {
+      regression = direction != 0 && Math.signum(change) != direction;
+      verdict = direction == 0 ? "changed"
+          : regression ? "REGRESSION" : "improvement";
+      test = "significant";
+    }
+    System.out.printf(Locale.ROOT, "  %-11s %s %s: %.4g -> %.4g (%+.1f%%, %s)\n",
+        verdict, configuration, metric, meanBefore, meanAfter, change, test);
+    return regression;
+  }
+
+  static int direction(String metric) {
+    String name = metric.toLowerCase(Locale.ROOT);
+    for (String higherIsBetter : Arrays.asList("ops", "throughput", "persec", "rate")) {
+      if (name.contains(higherIsBetter)) {
+        return 1;
+      }
+    }
+    for (String lowerIsBetter : Arrays.asList("latency", "time", "nanos", "millis", "wait")) {
+      if (name.contains(lowerIsBetter)) {
+        return -1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Welch's t-test, two-sided, at the 5% level. Both sides must have at
+   * least two samples, and at least one side some variance.
+   */
+  static boolean isSignificant(List<Double> a, List<Double> b) {
+    double varA = variance(a) / a.size();
+    double varB = variance(b) / b.size();
+    double t = Math.abs(mean(a) - mean(b)) / Math.sqrt(varA + varB);
+    double df = (varA + varB) * (varA + varB)
+        / (varA * varA / (a.size() - 1) + varB * varB / (b.size() - 1));
+    int dfIndex = (int) Math.max(1, Math.floor(df)) - 1;
+    double critical = dfIndex < T_CRITICAL.length ? T_CRITICAL[dfIndex] : 1.96;
+    return t > critical;
+  }
+
+  private static double mean(List<Double> values) {
+    double sum = 0;
+    for (double value : values) {
+      sum += value;
+    }
+    return sum / values.size();
+  }
+
+  private static double variance(List<Double> values) {
+    double mean = mean(values);
+    double sum = 0;
+    for (double value : values) {
+      sum += (value - mean) * (value - mean);
+    }
+    return sum / (values.size() - 1);
+  }
+
+  /**
+   * Group the scalar measurements of a run by benchmark configuration and
+   * measurement name.
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<String, Map<String, List<Double>>> samples(
+      List<Map<String, Object>> lines) {
+    Map<String, Map<String, List<Double>>> samples =
+        new LinkedHashMap<String, Map<String, List<Double>>>();
+    for (Map<String, Object> line : lines) {
+      String configuration = line.get("benchmark") + " " + line.get("args");
+      Map<String, List<Double>> metrics = samples.get(configuration);
+      if (metrics == null) {
+        metrics = new LinkedHashMap<String, List<Double>>();
+        samples.put(configuration, metrics);
+      }
+      addSamples(metrics, (Map<String, Object>) line.get("recorder"));
+      addSamples(metrics, (Map<String, Object>) line.get("latency"));
+      addSamples(metrics, (Map<String, Object>) line.get("gc"));
+    }
+    return samples;
+  }
+
+  private static void addSamples(
+      Map<String, List<Double>> metrics, Map<String, Object> measurements) {
+    if (measurements == null) {
+      return;
+    }
+    for (Map.Entry<String, Object> entry : measurements.entrySet()) {
+      if (!(entry.getValue() instanceof Double)) {
+        continue;
+      }
+      List<Double> values = metrics.get(entry.getKey());
+      if (values == null) {
+        values = new ArrayList<Double>();
+        metrics.put(entry.getKey(), values);
+      }
+      values.add((Double) entry.getValue());
+    }
+  }
+
+  private static String latestRun(File directory) {
+    String latest = null;
+    String[] names = directory.list();
+    if (names != null) {
+      for (String name : names) {
+        // The run names sort by time.
+        if (name.endsWith(".jsonl") && (latest == null || name.compareTo(latest) > 0)) {
+          latest = name;
+        }
+      }
+    }
+    if (latest == null) {
+      throw new IllegalStateException("No runs in " + directory);
+    }
+    return latest.substring(0, latest.length() - ".jsonl".length());
+  }
+}
@@ -0,0 +1,19 @@
+package stormpot.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads how much CPU time the current thread has used, so the benchmarks
+ * can tell what their waiting costs, and not just how long it takes.
+ */
+public final class CpuTimeMeter {
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  private CpuTimeMeter() {
+  }
+
+  public static long threadCpuNanos() {
+    return THREADS.getCurrentThreadCpuTime();
+  }
+}
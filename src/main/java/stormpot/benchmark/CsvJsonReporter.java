@@ -0,0 +1,114 @@
+package stormpot.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.benchkit.Recorder;
+import org.benchkit.Reporter;
+
+/**
+ * Collects every report as a row, and writes them as CSV and JSON for
+ * loading into other tools, next to the HTML charts.
+ * <p>
+ * A row has the benchmark name, the arguments as arg0, arg1 and so on, and
+ * the measurements read by {@link RecorderData}, followed by the latency
+ * percentiles and the whole latency distribution from
+ * {@link LatencyHistograms}, and the garbage collections from
+ * {@link GcMeter}, when the benchmark measured them. The distribution is
+ * exported as the counts of power-of-two nanosecond buckets, and the
+ * latencies at a fixed spectrum of percentiles, the same for every row. In
+ * the CSV, array measurements get a column per element, named like
+ * "latencyBuckets[3]". In the JSON, they stay arrays.
+ */
+public class CsvJsonReporter implements Reporter {
+  private final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+
+  @Override
+  public synchronized void report(String name, Object[] args, Recorder recorder) {
+    Map<String, Object> row = new LinkedHashMap<String, Object>();
+    row.put("benchmark", name);
+    for (int i = 0; i < args.length; i++) {
+      row.put("arg" + i, String.valueOf(args[i]));
+    }
+    row.putAll(RecorderData.of(recorder));
+    row.putAll(LatencyHistograms.summary(args));
+    row.putAll(LatencyHistograms.distribution(args));
+    row.putAll(GcMeter.summary(args));
+    rows.add(row);
+  }
+
+  public synchronized String generateJson() {
+    return Json.write(rows);
+  }
+
+  public synchronized String generateCsv() {
+    List<Map<String, Object>> flatRows = new ArrayList<Map<String, Object>>();
+    Set<String> columns = new LinkedHashSet<String>();
+    for (Map<String, Object> row : rows) {
+      Map<String, Object> flat = flatten(row);
+      columns.addAll(flat.keySet());
+      flatRows.add(flat);
+    }
+    StringBuilder sb = new StringBuilder();
+    appendLine(sb, new ArrayList<Object>(columns));
+    for (Map<String, Object> flat : flatRows) {
+      List<Object> values = new ArrayList<Object>();
+      for (String column : columns) {
+        values.add(flat.get(column));
+      }
+      appendLine(sb, values);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Write the rows to &lt;baseName&gt;.csv and &lt;baseName&gt;.json.
+   */
+  public void writeFiles(String baseName) throws IOException {
+    write(new File(baseName + ".csv"), generateCsv());
+    write(new File(baseName + ".json"), generateJson());
+  }
+
+  private static void write(File file, String content) throws IOException {
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static Map<String, Object> flatten(Map<String, Object> row) {
+    Map<String, Object> flat = new LinkedHashMap<String, Object>();
+    for (Map.Entry<String, Object> entry : row.entrySet()) {
+      Object value = entry.getValue();
+      if (value != null && value.getClass().isArray()) {
+        for (int i = 0; i < Array.getLength(value); i++) {
+          flat.put(entry.getKey() + "[" + i + "]", Array.get(value, i));
+        }
+      } else {
+        flat.put(entry.getKey(), value);
+      }
+    }
+    return flat;
+  }
+
+  private static void appendLine(StringBuilder sb, List<Object> values) {
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      Object value = values.get(i);
+      String s = value == null ? "" : value.toString();
+      if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0) {
+        s = '"' + s.replace("\"", "\"\"") + '"';
+      }
+      sb.append(s);
+    }
+    sb.append('\n');
+  }
+}
@@ -0,0 +1,238 @@
+package stormpot.benchmark;
+
+import java.io.File;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.HdrHistogram.Histogram;
+import org.benchkit.Benchmark;
+import org.benchkit.BenchmarkRunner;
+import org.benchkit.Param;
+import org.benchkit.PrintingReporter;
+import org.benchkit.Recorder;
+import org.benchkit.WarmupPrintingReporter;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+import org.benchkit.htmlchartsreporter.HtmlChartsReporter;
+import org.benchkit.htmlchartsreporter.LatencyHistogramChart;
+import org.benchkit.htmlchartsreporter.ThroughputChart;
+
+/**
+ * Workers claim a pooled direct buffer, fill it, and write it to a temp
+ * file through a {@link FileChannel}, to see how much the pool costs next
+ * to real I/O. Every write goes to the start of the file, so the file
+ * stays the size of one buffer.
+ * <p>
+ * Each session prints how the time was split between the pool and the
+ * I/O, and how many direct buffers, and how much direct memory, the JVM
+ * holds at the end of it.
+ */
+public class DirectBufferBenchmark implements Benchmark {
+  // Every worker writes this many bytes per session, whatever the buffer size.
+  private static final long BYTES_PER_WORKER = 256L * 1024 * 1024;
+
+  private final Object[] args;
+  private final PoolFactory factory;
+  private final int bufferBytes;
+  private final int threads;
+  private ExecutorService executor;
+  private PoolFacade pool;
+
+  public DirectBufferBenchmark(
+      @Param(value = "pools", defaults = "nopool,stack,generic,queue,blaze,tlcache,furious,ring,clq,deque") PoolFactory factory,
+      @Param(value = "bufferBytes", defaults = "4096,65536,1048576") int bufferBytes,
+      @Param(value = "threads", defaults = "1,4") int threads) {
+    this.args = new Object[] {factory, bufferBytes, threads};
+    this.factory = factory;
+    this.bufferBytes = bufferBytes;
+    this.threads = threads;
+  }
+
+  @Override
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(threads);
+    pool = factory.create(10, 1000, new Allocation().setDirectBufferBytes(bufferBytes));
+  }
+
+  @Override
+  public void runSession(Recorder recorder) throws Exception {
+    int iterations = (int) Math.max(1000, BYTES_PER_WORKER / bufferBytes);
+    CountDownLatch startLatch = new CountDownLatch(1);
+    CountDownLatch endLatch = new CountDownLatch(threads);
+    List<Recorder> subRecorders = new ArrayList<Recorder>();
+    List<Worker> workers = new ArrayList<Worker>();
+    List<Histogram> histograms = new ArrayList<Histogram>();
+
+    for (int i = 0; i < threads; i++) {
+      Recorder subRecorder = recorder.createBlankCopy();
+      subRecorders.add(subRecorder);
+      Path file = Files.createTempFile("stormpot-benchmark", ".bin");
+      Worker worker = new Worker(
+          pool, file, iterations, startLatch, endLatch, subRecorder);
+      workers.add(worker);
+      histograms.add(worker.histogram);
+      executor.execute(worker);
+    }
+
+    startLatch.countDown();
+    endLatch.await();
+
+    for (Recorder subRecorder : subRecorders) {
+      recorder.add(subRecorder);
+    }
+    LatencyHistograms.add(histograms, args);
+    printBreakdown(workers);
+  }
+
+  private void printBreakdown(List<Worker> workers) {
+    long poolNanos = 0;
+    long ioNanos = 0;
+    for (Worker worker : workers) {
+      poolNanos += worker.poolNanos;
+      ioNanos += worker.ioNanos;
+    }
+    long directCount = 0;
+    long directBytes = 0;
+    for (BufferPoolMXBean bufferPool :
+        ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if ("direct".equals(bufferPool.getName())) {
+        directCount = bufferPool.getCount();
+        directBytes = bufferPool.getMemoryUsed();
+      }
+    }
+    System.out.printf(
+        "%s bufferBytes=%s threads=%s: %.1f%% of the time in the pool, " +
+        "%s direct buffers using %s KB\n",
+        factory, bufferBytes, threads,
+        100.0 * poolNanos / Math.max(1, poolNanos + ioNanos),
+        directCount, directBytes / 1024);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    factory.shutdown(pool);
+    executor.shutdown();
+  }
+
+  public static class Worker implements Runnable {
+    private final PoolFacade pool;
+    private final Path file;
+    private final int iterations;
+    private final CountDownLatch startLatch;
+    private final CountDownLatch endLatch;
+    private final Recorder recorder;
+    private long poolNanos;
+    private long ioNanos;
+    private final Histogram histogram;
+
+    public Worker(PoolFacade pool, Path file, int iterations,
+        CountDownLatch startLatch, CountDownLatch endLatch, Recorder recorder) {
+      this.pool = pool;
+      this.file = file;
+      this.iterations = iterations;
+      this.startLatch = startLatch;
+      this.endLatch = endLatch;
+      this.recorder = recorder;
+      this.histogram = LatencyHistograms.create();
+    }
+
+    @Override
+    public void run() {
+      try (FileChannel channel = FileChannel.open(file,
+          StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+        startLatch.await();
+        long start = recorder.begin();
+        for (int i = 0; i < iterations; i++) {
+          BufferPoolable obj = (BufferPoolable) pool.claim();
+          long claimed = System.nanoTime();
+          ByteBuffer buffer = obj.getBuffer();
+          fill(buffer, i);
+          long position = 0;
+          while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+          }
+          long written = System.nanoTime();
+          pool.release(obj);
+          poolNanos += claimed - start;
+          ioNanos += written - claimed;
+          long end = recorder.record(start);
+          histogram.recordValue(end - start);
+          poolNanos += end - written;
+          start = end;
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+      endLatch.countDown();
+    }
+
+    private static void fill(ByteBuffer buffer, long value) {
+      buffer.clear();
+      while (buffer.remaining() >= 8) {
+        buffer.putLong(value);
+      }
+      buffer.flip();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String titleFormat = "Direct Buffer Benchmark [threads=%3$s]";
+    HtmlChartsReporter chartReporter = new HtmlChartsReporter(
+        new Interpretor(), titleFormat);
+    chartReporter.addChartRender(new ThroughputChart("Throughput", "Buffer size (bytes)", "Writes/Sec"));
+    chartReporter.addChartRender(new LatencyHistogramChart("Latency Histograms", "Buffer size (bytes)"));
+    PrintingReporter printingReporter = new PrintingReporter();
+    WarmupPrintingReporter warmupReporter = new WarmupPrintingReporter();
+    ResultsStore resultsStore = new ResultsStore();
+    CsvJsonReporter dataReporter = new CsvJsonReporter();
+    PercentileReporter percentileReporter = new PercentileReporter(
+        new Interpretor(), titleFormat);
+
+    // Pre-heat the lot:
+    System.out.println("## Warmup");
+    BenchmarkRunner.run(
+        DirectBufferBenchmark.class,
+        warmupReporter, 1, 0);
+
+    // The real run:
+    System.out.println("## Benchmark");
+    LatencyHistograms.clear();
+    BenchmarkRunner.run(
+        DirectBufferBenchmark.class,
+        printingReporter,
+        new TeeReporter(chartReporter, resultsStore, dataReporter, percentileReporter),
+        5, 0);
+
+    String report = percentileReporter.addTo(chartReporter.generateReport());
+    File file = new File("direct-buffer-results.html");
+    if (!file.exists()) file.createNewFile();
+    Files.write(file.toPath(), report.getBytes("UTF-8"));
+    dataReporter.writeFiles("direct-buffer-results");
+    percentileReporter.writeFiles("direct-buffer-results");
+  }
+
+  private static final class Interpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Direct Buffer Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[1];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return String.valueOf(args[0]);
+    }
+  }
+}
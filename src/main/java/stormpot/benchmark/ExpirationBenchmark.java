@@ -0,0 +1,76 @@
+package stormpot.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.benchkit.Benchmark;
+import org.benchkit.Param;
+import org.benchkit.Recorder;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+
+/**
+ * The {@link MultiThreadedBenchmark} workload with TTLs short enough, that
+ * most objects are expired and reallocated while the workers claim them,
+ * and with allocations that take a while.
+ */
+public class ExpirationBenchmark implements Benchmark {
+  private final Object[] args;
+  private final PoolFactory factory;
+  private final long objTtl;
+  private final long allocationCostNanos;
+  private final int threads;
+  private ExecutorService executor;
+  private PoolFacade pool;
+
+  public ExpirationBenchmark(
+      @Param(value = "pools", defaults = "stack,generic,queue,blaze,tlcache,furious,ring,clq,deque") PoolFactory factory,
+      @Param(value = "objTtl", defaults = "1,10,100,1000") long objTtl,
+      @Param(value = "allocationCostNanos", defaults = "0,10000,100000") long allocationCostNanos,
+      @Param(value = "threads", defaults = "4") int threads) {
+    this.args = new Object[] {factory, objTtl, allocationCostNanos, threads};
+    this.factory = factory;
+    this.objTtl = objTtl;
+    this.allocationCostNanos = allocationCostNanos;
+    this.threads = threads;
+  }
+
+  @Override
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(threads);
+    Allocation allocation = new Allocation().setCostNanos(allocationCostNanos);
+    pool = factory.create(10, objTtl, allocation);
+  }
+
+  @Override
+  public void runSession(Recorder recorder) throws Exception {
+    MultiThreadedBenchmark.runWorkers(pool, executor, threads, recorder, args);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    factory.shutdown(pool);
+    executor.shutdown();
+  }
+
+  public static void main(String[] args) throws Exception {
+    ReportingRunner.run(ExpirationBenchmark.class, new Interpretor(),
+        "Expiration Benchmark [allocationCostNanos=%3$s, threads=%4$s]",
+        "TTL (ms)", 1, "expiration-results");
+  }
+
+  private static final class Interpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Expiration Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[1];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return String.valueOf(args[0]);
+    }
+  }
+}
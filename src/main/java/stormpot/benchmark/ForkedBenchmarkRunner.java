@@ -0,0 +1,194 @@
+package stormpot.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.annotation.Annotation;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+import org.benchkit.Benchmark;
+import org.benchkit.BenchmarkRunner;
+import org.benchkit.Param;
+import org.benchkit.PrintingReporter;
+import org.benchkit.Recorder;
+import org.benchkit.Reporter;
+import org.benchkit.WarmupPrintingReporter;
+
+/**
+ * Runs every parameter combination of a benchmark in its own JVM.
+ * <p>
+ * When all the pools are measured in the same JVM, the call sites in the
+ * benchmarks that go through {@link PoolFacade} become megamorphic after
+ * the first pool, and every pool after that pays for a dispatch it would
+ * never see in production. Forking a JVM per combination gives each pool a
+ * clean JIT profile.
+ * <p>
+ * The forked JVMs follow the same warmup schedule as the in-process runs,
+ * and send their results back to this JVM, where they are given to the
+ * reporters. The results include the {@link LatencyHistograms} of the
+ * combination, and any filed under longer arguments, like per worker, which
+ * are filed under the same arguments in this JVM before the reporters see
+ * them.
+ */
+public class ForkedBenchmarkRunner {
+
+  public static void run(
+      Class<? extends Benchmark> benchmarkType,
+      Reporter... reporters) throws Exception {
+    for (List<String> combination : combinations(benchmarkType)) {
+      for (Result result : runForked(benchmarkType, combination)) {
+        for (Map.Entry<List<Object>, Histogram> histogram :
+            result.histograms.entrySet()) {
+          LatencyHistograms.put(
+              histogram.getKey().toArray(), histogram.getValue());
+        }
+        for (Reporter reporter : reporters) {
+          reporter.report(result.name, result.args, result.recorder);
+        }
+      }
+    }
+  }
+
+  private static List<List<String>> combinations(
+      Class<? extends Benchmark> benchmarkType) {
+    List<List<String>> combinations = new ArrayList<List<String>>();
+    combinations.add(new ArrayList<String>());
+    Constructor<?> constructor = benchmarkType.getConstructors()[0];
+    for (Annotation[] annotations : constructor.getParameterAnnotations()) {
+      Param param = findParam(annotations);
+      String[] values =
+          System.getProperty(param.value(), param.defaults()).split(",");
+      List<List<String>> expanded = new ArrayList<List<String>>();
+      for (List<String> combination : combinations) {
+        for (String value : values) {
+          List<String> copy = new ArrayList<String>(combination);
+          copy.add("-D" + param.value() + "=" + value.trim());
+          expanded.add(copy);
+        }
+      }
+      combinations = expanded;
+    }
+    return combinations;
+  }
+
+  private static Param findParam(Annotation[] annotations) {
+    for (Annotation annotation : annotations) {
+      if (annotation instanceof Param) {
+        return (Param) annotation;
+      }
+    }
+    throw new IllegalArgumentException(
+        "All benchmark constructor parameters must have a @Param annotation");
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Result> runForked(
+      Class<? extends Benchmark> benchmarkType,
+      List<String> combination) throws Exception {
+    File resultFile = File.createTempFile("forked-benchmark", ".ser");
+    try {
+      List<String> command = new ArrayList<String>();
+      command.add(System.getProperty("java.home") + File.separator
+          + "bin" + File.separator + "java");
+      for (String jvmArg :
+          ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+        if (!jvmArg.contains("jdwp")) {
+          command.add(jvmArg);
+        }
+      }
+      command.addAll(combination);
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(ForkedBenchmarkRunner.class.getName());
+      command.add(benchmarkType.getName());
+      command.add(resultFile.getAbsolutePath());
+
+      System.out.println("## Forking " + combination);
+      Process process = new ProcessBuilder(command).inheritIO().start();
+      int exitCode = process.waitFor();
+      if (exitCode != 0) {
+        throw new IllegalStateException(
+            "Forked benchmark " + combination + " failed: " + exitCode);
+      }
+
+      ObjectInputStream in =
+          new ObjectInputStream(new FileInputStream(resultFile));
+      try {
+        return (List<Result>) in.readObject();
+      } finally {
+        in.close();
+      }
+    } finally {
+      resultFile.delete();
+    }
+  }
+
+  /**
+   * Entry point of the forked JVMs. The parameters of the benchmark are
+   * given as system properties, so the benchmark only sees the one
+   * combination it was forked for.
+   */
+  public static void main(String[] args) throws Exception {
+    @SuppressWarnings("unchecked")
+    Class<? extends Benchmark> benchmarkType =
+        (Class<? extends Benchmark>) Class.forName(args[0]);
+    File resultFile = new File(args[1]);
+    WarmupPrintingReporter warmupReporter = new WarmupPrintingReporter();
+    CollectingReporter collectingReporter = new CollectingReporter();
+
+    System.out.println("## Warmup");
+    BenchmarkRunner.run(benchmarkType, warmupReporter, 4, 0);
+    BenchmarkRunner.run(benchmarkType, warmupReporter, 1, 0);
+
+    System.out.println("## Benchmark");
+    LatencyHistograms.clear();
+    BenchmarkRunner.run(
+        benchmarkType,
+        new PrintingReporter(),
+        collectingReporter,
+        5, 0);
+
+    ObjectOutputStream out =
+        new ObjectOutputStream(new FileOutputStream(resultFile));
+    try {
+      out.writeObject(collectingReporter.results);
+    } finally {
+      out.close();
+    }
+  }
+
+  private static final class CollectingReporter implements Reporter {
+    private final ArrayList<Result> results = new ArrayList<Result>();
+
+    @Override
+    public void report(String name, Object[] args, Recorder recorder) {
+      results.add(new Result(
+          name, args, recorder, LatencyHistograms.getAll(args)));
+    }
+  }
+
+  private static final class Result implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final Object[] args;
+    private final Recorder recorder;
+    private final Map<List<Object>, Histogram> histograms;
+
+    public Result(String name, Object[] args, Recorder recorder,
+        Map<List<Object>, Histogram> histograms) {
+      this.name = name;
+      this.args = args;
+      this.recorder = recorder;
+      this.histograms = histograms;
+    }
+  }
+}
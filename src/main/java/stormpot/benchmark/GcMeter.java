@@ -0,0 +1,84 @@
+package stormpot.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads how many collections the garbage collectors have done, and how long
+ * they took, summed over all collectors since the JVM started.
+ * <p>
+ * Benchmarks that measure garbage collection file what their sessions
+ * took under the arguments of the configuration, like the
+ * {@link LatencyHistograms}, so the reporters can put it in the results.
+ */
+public final class GcMeter {
+  private static final List<GarbageCollectorMXBean> COLLECTORS =
+      ManagementFactory.getGarbageCollectorMXBeans();
+
+  // The collection count and time of every configuration.
+  private static final Map<List<Object>, long[]> totals =
+      new HashMap<List<Object>, long[]>();
+
+  private GcMeter() {
+  }
+
+  public static long collectionCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean collector : COLLECTORS) {
+      count += Math.max(0, collector.getCollectionCount());
+    }
+    return count;
+  }
+
+  public static long collectionTimeMillis() {
+    long time = 0;
+    for (GarbageCollectorMXBean collector : COLLECTORS) {
+      time += Math.max(0, collector.getCollectionTime());
+    }
+    return time;
+  }
+
+  /**
+   * Add the collections of a session to the ones of the configuration with
+   * the given arguments.
+   */
+  public static void add(long count, long timeMillis, Object... args) {
+    List<Object> key = Arrays.asList(args);
+    synchronized (totals) {
+      long[] total = totals.get(key);
+      if (total == null) {
+        total = new long[2];
+        totals.put(key, total);
+      }
+      total[0] += count;
+      total[1] += timeMillis;
+    }
+  }
+
+  public static void clear() {
+    synchronized (totals) {
+      totals.clear();
+    }
+  }
+
+  /**
+   * The collections of the configuration with the given arguments, ready to
+   * be added to a results row. Empty if nothing was filed for it.
+   */
+  public static Map<String, Object> summary(Object[] args) {
+    Map<String, Object> summary = new LinkedHashMap<String, Object>();
+    synchronized (totals) {
+      long[] total = totals.get(Arrays.asList(args));
+      if (total != null) {
+        summary.put("gcCount", total[0]);
+        summary.put("gcTimeMillis", total[1]);
+      }
+    }
+    return summary;
+  }
+}
@@ -0,0 +1,26 @@
+package stormpot.benchmark;
+
+import org.benchkit.Recorder;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+
+/**
+ * Charts the garbage collection time that the benchmark filed with the
+ * {@link GcMeter} for every configuration, summed over its sessions.
+ */
+public class GcTimeReporter extends BarChartReporter {
+
+  public GcTimeReporter(DataInterpretor interpretor, String titleFormat) {
+    super(interpretor, titleFormat, "%,.0f ms");
+  }
+
+  @Override
+  protected String chartName() {
+    return "GC Time";
+  }
+
+  @Override
+  protected Double valueOf(Object[] args, Recorder recorder) {
+    Object timeMillis = GcMeter.summary(args).get("gcTimeMillis");
+    return timeMillis == null ? null : ((Long) timeMillis).doubleValue();
+  }
+}
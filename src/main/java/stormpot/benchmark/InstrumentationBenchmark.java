@@ -0,0 +1,80 @@
+package stormpot.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.benchkit.Benchmark;
+import org.benchkit.Param;
+import org.benchkit.Recorder;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+
+/**
+ * The {@link MultiThreadedBenchmark} workload with and without the
+ * {@link InstrumentedPoolFacade}, to measure what the instrumentation costs.
+ */
+public class InstrumentationBenchmark implements Benchmark {
+  private final Object[] args;
+  private final PoolFactory factory;
+  private final boolean instrumented;
+  private final int threads;
+  private ExecutorService executor;
+  private PoolFacade pool;
+
+  public InstrumentationBenchmark(
+      @Param(value = "pools", defaults = "stack,generic,queue,blaze,tlcache,furious,ring,clq,deque") PoolFactory factory,
+      @Param(value = "instrumented", defaults = "false,true") boolean instrumented,
+      @Param(value = "threads", defaults = "1,2,4,8") int threads) {
+    this.args = new Object[] {factory, instrumented, threads};
+    this.factory = factory;
+    this.instrumented = instrumented;
+    this.threads = threads;
+  }
+
+  @Override
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(threads);
+    pool = factory.create(10, 1000, new Allocation(), instrumented);
+  }
+
+  @Override
+  public void runSession(Recorder recorder) throws Exception {
+    MultiThreadedBenchmark.runWorkers(pool, executor, threads, recorder, args);
+    if (instrumented) {
+      PoolMetrics metrics = ((InstrumentedPoolFacade) pool).getMetrics();
+      System.out.printf(
+          "%s threads=%s: %s claims, %s allocations, %s deallocations, " +
+          "mean claim wait %.1f ns, mean hold %.1f ns\n",
+          factory, threads, metrics.getClaims(), metrics.getAllocations(),
+          metrics.getDeallocations(), metrics.getMeanClaimWaitNanos(),
+          metrics.getMeanHoldNanos());
+    }
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    factory.shutdown(pool);
+    executor.shutdown();
+  }
+
+  public static void main(String[] args) throws Exception {
+    ReportingRunner.run(InstrumentationBenchmark.class, new Interpretor(),
+        "Instrumentation Overhead Benchmark",
+        "Threads", 2, "instrumentation-results");
+  }
+
+  private static final class Interpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Instrumentation Overhead Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[2];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return Boolean.TRUE.equals(args[1]) ? args[0] + " (instrumented)" : String.valueOf(args[0]);
+    }
+  }
+}
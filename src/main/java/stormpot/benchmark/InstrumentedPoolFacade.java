@@ -0,0 +1,98 @@
+package stormpot.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * Decorates a pool with {@link PoolMetrics} for the claims and releases.
+ * <p>
+ * The claim times are kept per thread, so neither claims nor releases
+ * touch shared state other than the striped counters, and the pooled
+ * objects keep their layout when instrumentation is off. The hold time is
+ * therefore only recorded when the claiming thread also releases the
+ * object; other releases are counted without one.
+ */
+public class InstrumentedPoolFacade extends BasePoolFacade {
+  private final PoolFacade delegate;
+  private final PoolMetrics metrics;
+  private final ThreadLocal<Claims> claims = new ThreadLocal<Claims>() {
+    @Override
+    protected Claims initialValue() {
+      return new Claims();
+    }
+  };
+
+  public InstrumentedPoolFacade(PoolFacade delegate, PoolMetrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  public PoolFacade getDelegate() {
+    return delegate;
+  }
+
+  public PoolMetrics getMetrics() {
+    return metrics;
+  }
+
+  @Override
+  public Object claim() throws Exception {
+    long start = System.nanoTime();
+    Object obj = delegate.claim();
+    long claimed = System.nanoTime();
+    if (obj != null) {
+      metrics.recordClaim(claimed - start);
+      claims.get().add(obj, claimed);
+    }
+    return obj;
+  }
+
+  @Override
+  public void release(Object obj) throws Exception {
+    long claimed = claims.get().remove(obj);
+    delegate.release(obj);
+    if (claimed == Claims.MISSING) {
+      metrics.recordRelease();
+    } else {
+      metrics.recordRelease(System.nanoTime() - claimed);
+    }
+  }
+
+  /**
+   * The objects that a thread holds, with their claim times. Threads
+   * mostly hold one object, or a batch of a few, so a scan by identity is
+   * cheap, and the arrays only grow when a thread holds more objects than
+   * ever before.
+   */
+  private static final class Claims {
+    static final long MISSING = Long.MIN_VALUE;
+
+    private Object[] objs = new Object[4];
+    private long[] claimedNanos = new long[4];
+    private int size;
+
+    void add(Object obj, long claimed) {
+      if (size == objs.length) {
+        objs = Arrays.copyOf(objs, size * 2);
+        claimedNanos = Arrays.copyOf(claimedNanos, size * 2);
+      }
+      objs[size] = obj;
+      claimedNanos[size] = claimed;
+      size++;
+    }
+
+    long remove(Object obj) {
+      // The latest claim is the most likely to be released first.
+      for (int i = size - 1; i >= 0; i--) {
+        if (objs[i] == obj) {
+          long claimed = claimedNanos[i];
+          size--;
+          objs[i] = objs[size];
+          claimedNanos[i] = claimedNanos[size];
+          objs[size] = null;
+          return claimed;
+        }
+      }
+      return MISSING;
+    }
+  }
+}
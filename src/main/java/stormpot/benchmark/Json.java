@@ -0,0 +1,225 @@
+package stormpot.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the results files: writes maps, lists, strings,
+ * numbers, booleans and primitive arrays, and reads them back as maps,
+ * lists, strings, doubles, booleans and nulls.
+ */
+public final class Json {
+  private Json() {
+  }
+
+  public static String write(Object value) {
+    StringBuilder sb = new StringBuilder();
+    write(sb, value);
+    return sb.toString();
+  }
+
+  private static void write(StringBuilder sb, Object value) {
+    if (value == null) {
+      sb.append("null");
+    } else if (value instanceof Map) {
+      sb.append('{');
+      boolean first = true;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        if (!first) {
+          sb.append(',');
+        }
+        first = false;
+        writeString(sb, String.valueOf(entry.getKey()));
+        sb.append(':');
+        write(sb, entry.getValue());
+      }
+      sb.append('}');
+    } else if (value instanceof Iterable) {
+      sb.append('[');
+      boolean first = true;
+      for (Object element : (Iterable<?>) value) {
+        if (!first) {
+          sb.append(',');
+        }
+        first = false;
+        write(sb, element);
+      }
+      sb.append(']');
+    } else if (value.getClass().isArray()) {
+      List<Object> elements = new ArrayList<Object>();
+      for (int i = 0; i < java.lang.reflect.Array.getLength(value); i++) {
+        elements.add(java.lang.reflect.Array.get(value, i));
+      }
+      write(sb, elements);
+    } else if (value instanceof Double || value instanceof Float) {
+      double d = ((Number) value).doubleValue();
+      // JSON has no NaN or infinity.
+      sb.append(Double.isNaN(d) || Double.isInfinite(d) ? "null" : value.toString());
+    } else if (value instanceof Number || value instanceof Boolean) {
+      sb.append(value);
+    } else {
+      writeString(sb, value.toString());
+    }
+  }
+
+  private static void writeString(StringBuilder sb, String s) {
+    sb.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+      case '"': sb.append("\\\""); break;
+      case '\\': sb.append("\\\\"); break;
+      case '\n': sb.append("\\n"); break;
+      case '\r': sb.append("\\r"); break;
+      case '\t': sb.append("\\t"); break;
+      default:
+        if (c < 0x20) {
+          sb.append(String.format("\\u%04x", (int) c));
+        } else {
+          sb.append(c);
+        }
+      }
+    }
+    sb.append('"');
+  }
+
+  public static Object parse(String json) {
+    Parser parser = new Parser(json);
+    Object value = parser.value();
+    parser.skipWhitespace();
+    if (parser.pos != json.length()) {
+      throw parser.error("Trailing characters");
+    }
+    return value;
+  }
+
+  private static final class Parser {
+    private final String s;
+    private int pos;
+
+    Parser(String s) {
+      this.s = s;
+    }
+
+    Object value() {
+      skipWhitespace();
+      if (pos >= s.length()) {
+        throw error("Unexpected end");
+      }
+      char c = s.charAt(pos);
+      switch (c) {
+      case '{': return object();
+      case '[': return array();
+      case '"': return string();
+      case 't': return literal("true", Boolean.TRUE);
+      case 'f': return literal("false", Boolean.FALSE);
+      case 'n': return literal("null", null);
+      default: return number();
+      }
+    }
+
+    private Map<String, Object> object() {
+      Map<String, Object> map = new LinkedHashMap<String, Object>();
+      pos++;
+      skipWhitespace();
+      if (s.charAt(pos) == '}') {
+        pos++;
+        return map;
+      }
+      do {
+        skipWhitespace();
+        String key = string();
+        skipWhitespace();
+        expect(':');
+        map.put(key, value());
+        skipWhitespace();
+      } while (s.charAt(pos++) == ',');
+      if (s.charAt(pos - 1) != '}') {
+        throw error("Expected '}'");
+      }
+      return map;
+    }
+
+    private List<Object> array() {
+      List<Object> list = new ArrayList<Object>();
+      pos++;
+      skipWhitespace();
+      if (s.charAt(pos) == ']') {
+        pos++;
+        return list;
+      }
+      do {
+        list.add(value());
+        skipWhitespace();
+      } while (s.charAt(pos++) == ',');
+      if (s.charAt(pos - 1) != ']') {
+        throw error("Expected ']'");
+      }
+      return list;
+    }
+
+    private String string() {
+      expect('"');
+      StringBuilder sb = new StringBuilder();
+      char c;
+      while ((c = s.charAt(pos++)) != '"') {
+        if (c == '\\') {
+          c = s.charAt(pos++);
+          switch (c) {
+          case 'n': sb.append('\n'); break;
+          case 'r': sb.append('\r'); break;
+          case 't': sb.append('\t'); break;
+          case 'b': sb.append('\b'); break;
+          case 'f': sb.append('\f'); break;
+          case 'u':
+            sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+            pos += 4;
+            break;
+          default: sb.append(c);
+          }
+        } else {
+          sb.append(c);
+        }
+      }
+      return sb.toString();
+    }
+
+    private Double number() {
+      int start = pos;
+      while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) {
+        pos++;
+      }
+      if (start == pos) {
+        throw error("Unexpected character");
+      }
+      return Double.valueOf(s.substring(start, pos));
+    }
+
+    private Object literal(String literal, Object value) {
+      if (!s.startsWith(literal, pos)) {
+        throw error("Expected " + literal);
+      }
+      pos += literal.length();
+      return value;
+    }
+
+    private void expect(char c) {
+      if (pos >= s.length() || s.charAt(pos) != c) {
+        throw error("Expected '" + c + "'");
+      }
+      pos++;
+    }
+
+    void skipWhitespace() {
+      while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+        pos++;
+      }
+    }
+
+    IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at position " + pos);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package stormpot.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The distributions that simulated allocation latencies are drawn from.
+ */
+public enum LatencyDistribution {
+  fixed {
+    @Override
+    public long sample(long meanNanos) {
+      return meanNanos;
+    }
+  },
+  uniform {
+    @Override
+    public long sample(long meanNanos) {
+      return (long) (ThreadLocalRandom.current().nextDouble() * 2 * meanNanos);
+    }
+  },
+  exponential {
+    @Override
+    public long sample(long meanNanos) {
+      double u = ThreadLocalRandom.current().nextDouble();
+      return (long) (-meanNanos * Math.log(1.0 - u));
+    }
+  };
+
+  public abstract long sample(long meanNanos);
+}
@@ -0,0 +1,176 @@
+package stormpot.benchmark;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+/**
+ * Lossless latency recording, next to the {@link org.benchkit.Recorder}.
+ * <p>
+ * Every worker records into its own {@link Histogram}, which it alone
+ * touches, so recording takes no locks. When the workers of a session are
+ * done, the session adds their histograms together and files the sum here,
+ * under the arguments of the benchmark configuration. The reporters look
+ * the histograms up by the arguments they are given, which are the
+ * constructor arguments of the benchmark, in order. The benchmarks capture
+ * those in an args array in their constructors, so there is one list to
+ * keep in step with the parameters. Parts of a configuration, like single
+ * workers, go under the arguments plus one more, see
+ * {@link BreakdownReporter}.
+ * <p>
+ * The histograms keep everything recorded for a configuration since the
+ * last {@link #clear()}, so the mains clear them between the warmup and the
+ * real run.
+ */
+public final class LatencyHistograms {
+  private static final int SIGNIFICANT_DIGITS = 3;
+  // The histograms grow past this when needed, but start out big enough
+  // that they don't have to while a worker is recording.
+  private static final long INITIAL_HIGHEST_NANOS = TimeUnit.SECONDS.toNanos(10);
+  // Bucket i of the exported distributions counts the latencies from
+  // 2^(i-1) up to 2^i nanoseconds, and the last one everything above. The
+  // same buckets for every configuration keep the columns lined up.
+  private static final int BUCKETS = 40;
+  private static final double[] SPECTRUM_PERCENTILES = {
+      0, 10, 20, 30, 40, 50, 60, 70, 80, 90, 95, 99, 99.5, 99.9, 99.95,
+      99.99, 99.999, 100};
+
+  private static final Map<List<Object>, Histogram> histograms =
+      new HashMap<List<Object>, Histogram>();
+
+  private LatencyHistograms() {
+  }
+
+  /**
+   * Create a histogram for a worker to record latencies into, in
+   * nanoseconds.
+   */
+  public static Histogram create() {
+    Histogram histogram = new Histogram(INITIAL_HIGHEST_NANOS, SIGNIFICANT_DIGITS);
+    histogram.setAutoResize(true);
+    return histogram;
+  }
+
+  /**
+   * Add the histograms of the workers of a session to the ones of the
+   * configuration with the given arguments. Only call this when the workers
+   * are done recording.
+   */
+  public static void add(List<Histogram> workerHistograms, Object... args) {
+    Histogram session = create();
+    for (Histogram histogram : workerHistograms) {
+      session.add(histogram);
+    }
+    List<Object> key = Arrays.asList(args);
+    synchronized (histograms) {
+      Histogram total = histograms.get(key);
+      if (total == null) {
+        histograms.put(key, session);
+      } else {
+        total.add(session);
+      }
+    }
+  }
+
+  /**
+   * Get a copy of the histogram of the configuration with the given
+   * arguments, or null if nothing was recorded for it.
+   */
+  public static Histogram get(Object[] args) {
+    synchronized (histograms) {
+      Histogram histogram = histograms.get(Arrays.asList(args));
+      return histogram == null ? null : histogram.copy();
+    }
+  }
+
+  /**
+   * Get copies of the histogram of the configuration with the given
+   * arguments, and of the ones filed under longer arguments that start with
+   * them, like the histograms of the individual workers.
+   */
+  public static Map<List<Object>, Histogram> getAll(Object[] args) {
+    List<Object> prefix = Arrays.asList(args);
+    Map<List<Object>, Histogram> all = new LinkedHashMap<List<Object>, Histogram>();
+    synchronized (histograms) {
+      for (Map.Entry<List<Object>, Histogram> entry : histograms.entrySet()) {
+        List<Object> key = entry.getKey();
+        if (key.size() >= prefix.size()
+            && key.subList(0, prefix.size()).equals(prefix)) {
+          all.put(key, entry.getValue().copy());
+        }
+      }
+    }
+    return all;
+  }
+
+  /**
+   * Replace the histogram of a configuration, like when it was recorded in
+   * another JVM.
+   */
+  public static void put(Object[] args, Histogram histogram) {
+    synchronized (histograms) {
+      histograms.put(Arrays.asList(args), histogram);
+    }
+  }
+
+  public static void clear() {
+    synchronized (histograms) {
+      histograms.clear();
+    }
+  }
+
+  /**
+   * The headline percentiles of the configuration with the given arguments,
+   * in nanoseconds, ready to be added to a results row. Empty if nothing
+   * was recorded for it.
+   */
+  public static Map<String, Object> summary(Object[] args) {
+    Map<String, Object> summary = new LinkedHashMap<String, Object>();
+    Histogram histogram = get(args);
+    if (histogram == null || histogram.getTotalCount() == 0) {
+      return summary;
+    }
+    summary.put("histogramCount", histogram.getTotalCount());
+    summary.put("latencyMeanNanos", histogram.getMean());
+    summary.put("latencyP50Nanos", histogram.getValueAtPercentile(50.0));
+    summary.put("latencyP90Nanos", histogram.getValueAtPercentile(90.0));
+    summary.put("latencyP99Nanos", histogram.getValueAtPercentile(99.0));
+    summary.put("latencyP999Nanos", histogram.getValueAtPercentile(99.9));
+    summary.put("latencyP9999Nanos", histogram.getValueAtPercentile(99.99));
+    summary.put("latencyMaxNanos", histogram.getMaxValue());
+    return summary;
+  }
+
+  /**
+   * The whole latency distribution of the configuration with the given
+   * arguments: the counts in power-of-two nanosecond buckets, and the
+   * latencies at a fixed spectrum of percentiles. Empty if nothing was
+   * recorded for it.
+   */
+  public static Map<String, Object> distribution(Object[] args) {
+    Map<String, Object> distribution = new LinkedHashMap<String, Object>();
+    Histogram histogram = get(args);
+    if (histogram == null || histogram.getTotalCount() == 0) {
+      return distribution;
+    }
+    long[] buckets = new long[BUCKETS];
+    for (HistogramIterationValue value : histogram.recordedValues()) {
+      int bucket = 64 - Long.numberOfLeadingZeros(value.getValueIteratedTo());
+      buckets[Math.min(bucket, BUCKETS - 1)] += value.getCountAtValueIteratedTo();
+    }
+    long[] spectrum = new long[SPECTRUM_PERCENTILES.length];
+    for (int i = 0; i < spectrum.length; i++) {
+      spectrum[i] = histogram.getValueAtPercentile(SPECTRUM_PERCENTILES[i]);
+    }
+    distribution.put("latencyBuckets", buckets);
+    distribution.put("latencySpectrumPercentiles", SPECTRUM_PERCENTILES.clone());
+    distribution.put("latencySpectrumNanos", spectrum);
+    return distribution;
+  }
+}
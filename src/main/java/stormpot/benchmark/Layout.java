@@ -0,0 +1,87 @@
+package stormpot.benchmark;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import stormpot.Slot;
+
+/**
+ * How the pooled objects are laid out in memory.
+ */
+public enum Layout {
+  unpadded {
+    @Override
+    public MyPoolable create(Slot slot, Clock clock, int payloadBytes) {
+      return new MyPoolable(slot, clock, payloadBytes);
+    }
+
+    @Override
+    public MyPoolable createUnpooled(int payloadBytes) {
+      return new MyPoolable(payloadBytes);
+    }
+  },
+  padded {
+    @Override
+    public MyPoolable create(Slot slot, Clock clock, int payloadBytes) {
+      return new PaddedMyPoolable(slot, clock, payloadBytes);
+    }
+
+    @Override
+    public MyPoolable createUnpooled(int payloadBytes) {
+      return new PaddedMyPoolable(payloadBytes);
+    }
+  };
+
+  private static final int CACHE_LINE_BYTES = 64;
+
+  public abstract MyPoolable create(Slot slot, Clock clock, int payloadBytes);
+
+  /**
+   * Create an object that is not part of any pool.
+   */
+  public abstract MyPoolable createUnpooled(int payloadBytes);
+
+  /**
+   * Check that the JVM put at least a cache line of padding after the fields
+   * of {@link MyPoolable}, in {@link PaddedMyPoolable}. Throws an
+   * IllegalStateException if it did not.
+   */
+  public static void verifyPadding() throws Exception {
+    // Unsafe is looked up reflectively, since it is not part of the API.
+    Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+    Field field = unsafeClass.getDeclaredField("theUnsafe");
+    field.setAccessible(true);
+    Object unsafe = field.get(null);
+    Method objectFieldOffset =
+        unsafeClass.getMethod("objectFieldOffset", Field.class);
+
+    long lastHotOffset = 0;
+    for (Field hot : MyPoolable.class.getDeclaredFields()) {
+      if (!Modifier.isStatic(hot.getModifiers())) {
+        long offset = (Long) objectFieldOffset.invoke(unsafe, hot);
+        lastHotOffset = Math.max(lastHotOffset, offset);
+      }
+    }
+    long firstPadOffset = Long.MAX_VALUE;
+    long lastPadOffset = 0;
+    for (Field pad : PaddedMyPoolable.class.getDeclaredFields()) {
+      long offset = (Long) objectFieldOffset.invoke(unsafe, pad);
+      firstPadOffset = Math.min(firstPadOffset, offset);
+      lastPadOffset = Math.max(lastPadOffset, offset);
+    }
+    // The fields are at most 8 bytes wide, so this is a lower bound.
+    long paddingAfterHotFields = lastPadOffset - lastHotOffset;
+    if (firstPadOffset < lastHotOffset || paddingAfterHotFields < CACHE_LINE_BYTES) {
+      throw new IllegalStateException(String.format(
+          "PaddedMyPoolable is not padded: last field of MyPoolable at " +
+          "offset %s, padding from offset %s to %s",
+          lastHotOffset, firstPadOffset, lastPadOffset));
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    verifyPadding();
+    System.out.println("PaddedMyPoolable is padded by at least one cache line.");
+  }
+}
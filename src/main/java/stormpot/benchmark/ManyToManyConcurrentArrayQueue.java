@@ -0,0 +1,95 @@
+package stormpot.benchmark;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import uk.co.real_logic.queues.OneToOneConcurrentArrayQueue3;
+import uk.co.real_logic.queues.PaddedAtomicLong;
+
+/**
+ * A bounded, lock-free queue for any number of producers and consumers,
+ * in the style of the {@link OneToOneConcurrentArrayQueue3}.
+ * <p>
+ * Every element of the ring has a sequence number, that tells producers
+ * when the element is free to be written, and consumers when it is ready
+ * to be read. Producers and consumers claim their positions by CAS on the
+ * tail and head counters, respectively.
+ */
+public final class ManyToManyConcurrentArrayQueue<E> extends AbstractQueue<E> {
+  private final int capacity;
+  private final int mask;
+  private final AtomicReferenceArray<E> buffer;
+  private final AtomicLongArray sequences;
+
+  private final AtomicLong tail = new PaddedAtomicLong(0);
+  private final AtomicLong head = new PaddedAtomicLong(0);
+
+  public ManyToManyConcurrentArrayQueue(int capacity) {
+    this.capacity =
+        OneToOneConcurrentArrayQueue3.findNextPositivePowerOfTwo(capacity);
+    mask = this.capacity - 1;
+    buffer = new AtomicReferenceArray<E>(this.capacity);
+    sequences = new AtomicLongArray(this.capacity);
+    for (int i = 0; i < this.capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  @Override
+  public boolean offer(E e) {
+    if (null == e) {
+      throw new NullPointerException("Null is not a valid element");
+    }
+    for (;;) {
+      long currentTail = tail.get();
+      int index = (int) currentTail & mask;
+      long diff = sequences.get(index) - currentTail;
+      if (diff == 0) {
+        if (tail.compareAndSet(currentTail, currentTail + 1)) {
+          buffer.lazySet(index, e);
+          sequences.lazySet(index, currentTail + 1);
+          return true;
+        }
+      } else if (diff < 0) {
+        return false;
+      }
+    }
+  }
+
+  @Override
+  public E poll() {
+    for (;;) {
+      long currentHead = head.get();
+      int index = (int) currentHead & mask;
+      long diff = sequences.get(index) - (currentHead + 1);
+      if (diff == 0) {
+        if (head.compareAndSet(currentHead, currentHead + 1)) {
+          E e = buffer.get(index);
+          buffer.lazySet(index, null);
+          sequences.lazySet(index, currentHead + capacity);
+          return e;
+        }
+      } else if (diff < 0) {
+        return null;
+      }
+    }
+  }
+
+  @Override
+  public E peek() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int size() {
+    return (int) Math.max(0, tail.get() - head.get());
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    throw new UnsupportedOperationException();
+  }
+}
@@ -0,0 +1,265 @@
+package stormpot.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.benchkit.Benchmark;
+import org.benchkit.BenchmarkRunner;
+import org.benchkit.Param;
+import org.benchkit.PrintingReporter;
+import org.benchkit.Recorder;
+import org.benchkit.WarmupPrintingReporter;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+import org.benchkit.htmlchartsreporter.HtmlChartsReporter;
+import org.benchkit.htmlchartsreporter.LatencyHistogramChart;
+import org.benchkit.htmlchartsreporter.ThroughputChart;
+
+/**
+ * Like the {@link MessagePassingBenchmark}, but with any number of claimer
+ * threads passing objects through a {@link ManyToManyConcurrentArrayQueue}
+ * to any number of releaser threads. The recorded latency is the cost of
+ * releasing an object claimed by another thread.
+ */
+public class ManyToManyMessagePassingBenchmark implements Benchmark {
+  private final Object[] args;
+  private final PoolFactory factory;
+  private final int releasers;
+  private final int claimers;
+  private final int poolSize;
+  private final int repititions;
+  private ExecutorService executor;
+  private PoolFacade pool;
+
+  public ManyToManyMessagePassingBenchmark(
+      @Param(value = "pools", defaults = "stack,generic,queue,blaze,tlcache,furious,ring,clq,deque") PoolFactory factory,
+      @Param(value = "releasers", defaults = "1,2,4") int releasers,
+      @Param(value = "claimers", defaults = "1,2,4") int claimers,
+      @Param(value = "poolSize", defaults = "64") int poolSize,
+      @Param(value = "repititions", defaults = "2000000") int repititions) {
+    this.args = new Object[] {factory, releasers, claimers, poolSize, repititions};
+    this.factory = factory;
+    this.releasers = releasers;
+    this.claimers = claimers;
+    this.poolSize = poolSize;
+    this.repititions = repititions;
+  }
+
+  @Override
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(claimers + releasers);
+    pool = factory.create(poolSize, 1000);
+  }
+
+  @Override
+  public void runSession(Recorder recorder) throws Exception {
+    Queue<Object> queue = new ManyToManyConcurrentArrayQueue<Object>(poolSize);
+    CountDownLatch startLatch = new CountDownLatch(1);
+    CountDownLatch endLatch = new CountDownLatch(claimers + releasers);
+    AtomicLong tickets = new AtomicLong();
+    AtomicBoolean aborted = new AtomicBoolean();
+    List<Recorder> subRecorders = new ArrayList<Recorder>();
+    List<Histogram> histograms = new ArrayList<Histogram>();
+
+    int perClaimer = repititions / claimers;
+    long total = (long) perClaimer * claimers;
+    for (int i = 0; i < claimers; i++) {
+      executor.execute(new Claimer(
+          queue, perClaimer, pool, aborted, startLatch, endLatch));
+    }
+    for (int i = 0; i < releasers; i++) {
+      Recorder subRecorder = recorder.createBlankCopy();
+      subRecorders.add(subRecorder);
+      Histogram histogram = LatencyHistograms.create();
+      histograms.add(histogram);
+      executor.execute(new Releaser(queue, tickets, total, pool, aborted,
+          startLatch, endLatch, subRecorder, histogram));
+    }
+
+    startLatch.countDown();
+    endLatch.await();
+    if (aborted.get()) {
+      throw new IllegalStateException(
+          "A claimer or releaser failed; see the stack trace above");
+    }
+
+    for (Recorder subRecorder : subRecorders) {
+      recorder.add(subRecorder);
+    }
+    LatencyHistograms.add(histograms, args);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    factory.shutdown(pool);
+    executor.shutdown();
+  }
+
+  /**
+   * Claimers retry claims that time out, since the releasers count on
+   * getting every object. If a claim fails, the claimer sets the aborted
+   * flag, so the releasers stop waiting for objects that will never come,
+   * and the other way around.
+   */
+  public static class Claimer implements Runnable {
+    private final Queue<Object> queue;
+    private final int repititions;
+    private final PoolFacade pool;
+    private final AtomicBoolean aborted;
+    private final CountDownLatch startLatch;
+    private final CountDownLatch endLatch;
+
+    public Claimer(Queue<Object> queue, int repititions, PoolFacade pool,
+        AtomicBoolean aborted, CountDownLatch startLatch,
+        CountDownLatch endLatch) {
+      this.queue = queue;
+      this.repititions = repititions;
+      this.pool = pool;
+      this.aborted = aborted;
+      this.startLatch = startLatch;
+      this.endLatch = endLatch;
+    }
+
+    @Override
+    public void run() {
+      try {
+        startLatch.await();
+        for (int i = 0; i < repititions && !aborted.get(); i++) {
+          Object obj;
+          while (null == (obj = pool.claim())) {
+            if (aborted.get()) {
+              return;
+            }
+          }
+          while (!queue.offer(obj)) {
+            if (aborted.get()) {
+              return;
+            }
+            Thread.yield();
+          }
+        }
+      } catch (Exception e) {
+        aborted.set(true);
+        e.printStackTrace();
+      } finally {
+        endLatch.countDown();
+      }
+    }
+  }
+
+  /**
+   * Releasers take a ticket for every object they release, so that between
+   * them, they release exactly as many objects as the claimers claimed.
+   * They give up when a claimer has failed.
+   */
+  public static class Releaser implements Runnable {
+    private final Queue<Object> queue;
+    private final AtomicLong tickets;
+    private final long total;
+    private final PoolFacade pool;
+    private final AtomicBoolean aborted;
+    private final CountDownLatch startLatch;
+    private final CountDownLatch endLatch;
+    private final Recorder recorder;
+    private final Histogram histogram;
+
+    public Releaser(Queue<Object> queue, AtomicLong tickets, long total,
+        PoolFacade pool, AtomicBoolean aborted, CountDownLatch startLatch,
+        CountDownLatch endLatch, Recorder recorder, Histogram histogram) {
+      this.queue = queue;
+      this.tickets = tickets;
+      this.total = total;
+      this.pool = pool;
+      this.aborted = aborted;
+      this.startLatch = startLatch;
+      this.endLatch = endLatch;
+      this.recorder = recorder;
+      this.histogram = histogram;
+    }
+
+    @Override
+    public void run() {
+      try {
+        startLatch.await();
+        recorder.begin();
+        Object obj;
+        while (tickets.getAndIncrement() < total) {
+          while (null == (obj = queue.poll())) {
+            if (aborted.get()) {
+              return;
+            }
+            Thread.yield();
+          }
+          long start = System.nanoTime();
+          pool.release(obj);
+          histogram.recordValue(recorder.record(start) - start);
+        }
+      } catch (Exception e) {
+        aborted.set(true);
+        e.printStackTrace();
+      } finally {
+        endLatch.countDown();
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String titleFormat = "Many-to-Many Message Passing Benchmark [claimers=%3$s, poolSize=%4$s]";
+    HtmlChartsReporter chartReporter = new HtmlChartsReporter(
+        new Interpretor(), titleFormat);
+    chartReporter.addChartRender(new ThroughputChart("Throughput", "Releasers", "Ops/Sec"));
+    chartReporter.addChartRender(new LatencyHistogramChart("Release Latency Histogram", "Releasers"));
+    PrintingReporter printingReporter = new PrintingReporter();
+    WarmupPrintingReporter warmupReporter = new WarmupPrintingReporter();
+    ResultsStore resultsStore = new ResultsStore();
+    CsvJsonReporter dataReporter = new CsvJsonReporter();
+    PercentileReporter percentileReporter = new PercentileReporter(
+        new Interpretor(), titleFormat);
+
+    // Pre-heat the lot:
+    System.out.println("## Warmup");
+    BenchmarkRunner.run(
+        ManyToManyMessagePassingBenchmark.class,
+        warmupReporter, 2, 0);
+
+    // The real run:
+    System.out.println("## Benchmark");
+    LatencyHistograms.clear();
+    BenchmarkRunner.run(
+        ManyToManyMessagePassingBenchmark.class,
+        printingReporter,
+        new TeeReporter(chartReporter, resultsStore, dataReporter, percentileReporter),
+        5, 0);
+
+    String report = percentileReporter.addTo(chartReporter.generateReport());
+    File file = new File("many-to-many-message-passing-results.html");
+    if (!file.exists()) file.createNewFile();
+    Files.write(file.toPath(), report.getBytes("UTF-8"));
+    dataReporter.writeFiles("many-to-many-message-passing-results");
+    percentileReporter.writeFiles("many-to-many-message-passing-results");
+  }
+
+  private static final class Interpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Many-to-Many Message Passing Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[1];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return String.valueOf(args[0]);
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package stormpot.benchmark;
 
+import org.HdrHistogram.Histogram;
 import org.benchkit.Benchmark;
 import org.benchkit.BenchmarkRunner;
 import org.benchkit.Param;
@@ -13,6 +14,7 @@ import org.benchkit.htmlchartsreporter.ThroughputChart;
 
 import java.io.File;
 import java.nio.file.Files;
+import java.util.Collections;
 import java.util.Queue;
 
 import uk.co.real_logic.queues.OneToOneConcurrentArrayQueue3;
@@ -21,18 +23,23 @@ public class MessagePassingBenchmark implements Benchmark {
 
   private final int repititions;
   private final int poolSize;
+  private final WaitStrategy waitStrategy;
   
+  private final Object[] args;
   private final PoolFactory factory;
   private Thread releaser;
   private PoolFacade pool;
   
   public MessagePassingBenchmark(
-      @Param(value = "pools", defaults = "stack,generic,queue,blaze,furious") PoolFactory factory,
+      @Param(value = "pools", defaults = "stack,generic,queue,blaze,tlcache,furious,ring,clq,deque") PoolFactory factory,
       @Param(value = "poolSize", defaults = "8,1024") int poolSize,
-      @Param(value = "repititions", defaults = "2000000") int repititions) {
+      @Param(value = "repititions", defaults = "2000000") int repititions,
+      @Param(value = "waitStrategy", defaults = "spin,yield,backoff,park") WaitStrategy waitStrategy) {
+    this.args = new Object[] {factory, poolSize, repititions, waitStrategy};
     this.factory = factory;
     this.poolSize = poolSize;
     this.repititions = repititions;
+    this.waitStrategy = waitStrategy;
   }
 
   @Override
@@ -43,20 +50,46 @@ public class MessagePassingBenchmark implements Benchmark {
   @Override
   public void runSession(Recorder recorder) throws Exception {
     Queue<Object> queue = new OneToOneConcurrentArrayQueue3<Object>(poolSize);
-    releaser = new Thread(new Releaser(queue, repititions, pool));
+    // The releaser reads the offer time of an object right after polling it.
+    // Twice the queue capacity guarantees that it is done reading, before
+    // the claimer gets to overwrite it.
+    int capacity = OneToOneConcurrentArrayQueue3.findNextPositivePowerOfTwo(poolSize);
+    long[] offerTimes = new long[capacity * 2];
+    int mask = offerTimes.length - 1;
+    Releaser releaserTask = new Releaser(
+        queue, repititions, pool, waitStrategy, offerTimes);
+    releaser = new Thread(releaserTask);
     releaser.start();
     
+    long allocatedBefore = AllocationMeter.threadAllocatedBytes();
+    long cpuBefore = CpuTimeMeter.threadCpuNanos();
+    Histogram histogram = LatencyHistograms.create();
     long start = recorder.begin();
     for (int i = 0; i <= repititions; i++) {
       Object obj = pool.claim();
-      start = recorder.record(start);
+      long end = recorder.record(start);
+      histogram.recordValue(end - start);
+      start = end;
+      offerTimes[i & mask] = System.nanoTime();
+      int attempt = 0;
       while (!queue.offer(obj)) {
-        Thread.yield();
+        waitStrategy.idle(attempt++);
       }
     }
+    long allocatedBytes = AllocationMeter.threadAllocatedBytes() - allocatedBefore;
+    long claimerCpuNanos = CpuTimeMeter.threadCpuNanos() - cpuBefore;
     
     releaser.interrupt();
     releaser.join();
+    LatencyHistograms.add(Collections.singletonList(histogram), args);
+    String label = factory + " poolSize=" + poolSize + " " + waitStrategy;
+    AllocationMeter.print(label,
+        allocatedBytes + releaserTask.allocatedBytes, repititions + 1);
+    System.out.printf(
+        "%s: mean handoff %.1f ns, max %s ns, cpu time claimer %s ms, releaser %s ms\n",
+        label, releaserTask.handoffNanos / (double) (repititions + 1),
+        releaserTask.maxHandoffNanos, claimerCpuNanos / 1000000,
+        releaserTask.cpuNanos / 1000000);
   }
 
   @Override
@@ -68,59 +101,90 @@ public class MessagePassingBenchmark implements Benchmark {
     private final Queue<Object> queue;
     private final int repititions;
     private final PoolFacade pool;
+    private final WaitStrategy waitStrategy;
+    private final long[] offerTimes;
+    private long allocatedBytes;
+    private long cpuNanos;
+    private long handoffNanos;
+    private long maxHandoffNanos;
 
-    public Releaser(Queue<Object> queue, int repititions, PoolFacade pool) {
+    public Releaser(Queue<Object> queue, int repititions, PoolFacade pool,
+        WaitStrategy waitStrategy, long[] offerTimes) {
       this.queue = queue;
       this.repititions = repititions;
       this.pool = pool;
+      this.waitStrategy = waitStrategy;
+      this.offerTimes = offerTimes;
     }
 
     @Override
     public void run() {
       Object obj;
+      int mask = offerTimes.length - 1;
+      long allocatedBefore = AllocationMeter.threadAllocatedBytes();
+      long cpuBefore = CpuTimeMeter.threadCpuNanos();
       for (int i = 0; i <= repititions; i++) {
+        int attempt = 0;
         while (null == (obj = queue.poll())) {
-          Thread.yield();
+          waitStrategy.idle(attempt++);
         }
+        long handoff = System.nanoTime() - offerTimes[i & mask];
+        handoffNanos += handoff;
+        maxHandoffNanos = Math.max(maxHandoffNanos, handoff);
         try {
           pool.release(obj);
         } catch (Exception e) {
           e.printStackTrace();
         }
       }
+      allocatedBytes = AllocationMeter.threadAllocatedBytes() - allocatedBefore;
+      cpuNanos = CpuTimeMeter.threadCpuNanos() - cpuBefore;
     }
   }
   
   public static void main(String[] args) throws Exception {
+    String titleFormat = "Message Passing Benchmark [iterations=%3$s, waitStrategy=%4$s]";
     HtmlChartsReporter chartReporter = new HtmlChartsReporter(
-        new Interpretor(),
-        "Message Passing Benchmark [iterations=%3$s]");
+        new Interpretor(), titleFormat);
     chartReporter.addChartRender(new ThroughputChart("Throughput", "Pool size", "Ops/Sec"));
     chartReporter.addChartRender(new LatencyHistogramChart("Latency Histogram", "Pool size"));
     PrintingReporter printingReporter = new PrintingReporter();
     WarmupPrintingReporter warmupReporter = new WarmupPrintingReporter();
+    ResultsStore resultsStore = new ResultsStore();
+    CsvJsonReporter dataReporter = new CsvJsonReporter();
+    PercentileReporter percentileReporter = new PercentileReporter(
+        new Interpretor(), titleFormat);
     
-    // Pre-heat the lot:
-    System.out.println("## Warmup");
-    BenchmarkRunner.run(
-        MessagePassingBenchmark.class,
-        warmupReporter, 4, 0);
-    BenchmarkRunner.run(
-        MessagePassingBenchmark.class,
-        warmupReporter, 1, 0);
-    
-    // The real run:
-    System.out.println("## Benchmark");
-    BenchmarkRunner.run(
-        MessagePassingBenchmark.class,
-        printingReporter,
-        chartReporter,
-        5, 0);
+    if (Boolean.getBoolean("fork")) {
+      // Every pool in its own JVM, with its own warmup:
+      ForkedBenchmarkRunner.run(MessagePassingBenchmark.class,
+          chartReporter, resultsStore, dataReporter, percentileReporter);
+    } else {
+      // Pre-heat the lot:
+      System.out.println("## Warmup");
+      BenchmarkRunner.run(
+          MessagePassingBenchmark.class,
+          warmupReporter, 4, 0);
+      BenchmarkRunner.run(
+          MessagePassingBenchmark.class,
+          warmupReporter, 1, 0);
+      
+      // The real run:
+      System.out.println("## Benchmark");
+      LatencyHistograms.clear();
+      BenchmarkRunner.run(
+          MessagePassingBenchmark.class,
+          printingReporter,
+          new TeeReporter(chartReporter, resultsStore, dataReporter, percentileReporter),
+          5, 0);
+    }
     
-    String report = chartReporter.generateReport();
+    String report = percentileReporter.addTo(chartReporter.generateReport());
     File file = new File("message-passing-results.html");
     if (!file.exists()) file.createNewFile();
     Files.write(file.toPath(), report.getBytes("UTF-8"));
+    dataReporter.writeFiles("message-passing-results");
+    percentileReporter.writeFiles("message-passing-results");
   }
   
   private static final class Interpretor implements DataInterpretor {
@@ -3,16 +3,20 @@ package stormpot.benchmark;
 import java.io.File;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import org.HdrHistogram.Histogram;
 import org.benchkit.Benchmark;
 import org.benchkit.BenchmarkRunner;
 import org.benchkit.PrintingReporter;
 import org.benchkit.Recorder;
 import org.benchkit.Param;
+import org.benchkit.Reporter;
 import org.benchkit.WarmupPrintingReporter;
 import org.benchkit.htmlchartsreporter.DataInterpretor;
 import org.benchkit.htmlchartsreporter.HtmlChartsReporter;
@@ -20,26 +24,44 @@ import org.benchkit.htmlchartsreporter.LatencyHistogramChart;
 import org.benchkit.htmlchartsreporter.ThroughputChart;
 
 public class MultiThreadedBenchmark implements Benchmark {
-  private static final int ITERATIONS = 2 * 1000 * 1000;
+  static final int ITERATIONS = 2 * 1000 * 1000;
+  // The sessions of this benchmark run for a fixed time, rather than a
+  // fixed number of iterations, so a thread that loses out on claims does
+  // fewer of them, instead of finishing them late and uncontended.
+  private static final long SESSION_NANOS = TimeUnit.SECONDS.toNanos(1);
 
+  private final Object[] args;
   private final PoolFactory factory;
   private final int threads;
+  private final int poolSize;
+  private final long holdTimeNanos;
+  private final Layout layout;
   private ExecutorService executor;
   private PoolFacade pool;
   
   public MultiThreadedBenchmark(
 //      @Param(value = "pools", defaults = "blaze,furious") PoolFactory factory,
 //      @Param(value = "threads", defaults = "1,2,4,12") int threads) {
-      @Param(value = "pools", defaults = "stack,generic,queue,blaze,furious") PoolFactory factory,
-      @Param(value = "threads", defaults = "1,2,4,8,16") int threads) {
+      @Param(value = "pools", defaults = "stack,generic,queue,blaze,tlcache,furious,ring,clq,deque") PoolFactory factory,
+      @Param(value = "threads", defaults = "1,2,4,8,16") int threads,
+      @Param(value = "poolSize", defaults = "10") int poolSize,
+      @Param(value = "holdTimeNanos", defaults = "0") long holdTimeNanos,
+      @Param(value = "layout", defaults = "unpadded,padded") Layout layout) {
+    this.args = new Object[] {factory, threads, poolSize, holdTimeNanos, layout};
     this.factory = factory;
     this.threads = threads;
+    this.poolSize = poolSize;
+    this.holdTimeNanos = holdTimeNanos;
+    this.layout = layout;
   }
 
   @Override
-  public void setUp() {
+  public void setUp() throws Exception {
+    if (layout == Layout.padded) {
+      Layout.verifyPadding();
+    }
     executor = Executors.newFixedThreadPool(threads);
-    pool = factory.create(10, 1000);
+    pool = factory.create(poolSize, 1000, new Allocation().setLayout(layout));
   }
 
   @Override
@@ -47,11 +69,18 @@ public class MultiThreadedBenchmark implements Benchmark {
     CountDownLatch startLatch = new CountDownLatch(1);
     CountDownLatch endLatch = new CountDownLatch(threads);
     List<Recorder> subRecorders = new ArrayList<Recorder>();
+    List<WindowWorker> workers = new ArrayList<WindowWorker>();
+    List<Histogram> histograms = new ArrayList<Histogram>();
     
+    long deadline = System.nanoTime() + SESSION_NANOS;
     for (int i = 0; i < threads; i++) {
       Recorder subRecorder = recorder.createBlankCopy();
       subRecorders.add(subRecorder);
-      executor.execute(new Worker(pool, startLatch, endLatch, subRecorder));
+      WindowWorker worker = new WindowWorker(
+          pool, holdTimeNanos, deadline, startLatch, endLatch, subRecorder);
+      workers.add(worker);
+      histograms.add(worker.histogram);
+      executor.execute(worker);
     }
     
     startLatch.countDown();
@@ -60,6 +89,68 @@ public class MultiThreadedBenchmark implements Benchmark {
     for (Recorder subRecorder : subRecorders) {
       recorder.add(subRecorder);
     }
+    LatencyHistograms.add(histograms, args);
+    for (int i = 0; i < histograms.size(); i++) {
+      LatencyHistograms.add(Collections.singletonList(histograms.get(i)),
+          BreakdownReporter.partOf(args, i));
+    }
+    printClaimWait(workers);
+    printFairness(workers);
+    printAllocations(workers);
+  }
+
+  /**
+   * Print the operations, latency percentiles and worst claim wait of every
+   * worker, and Jain's fairness index over their operations: 1.0 when all
+   * workers got the same share of the session, down to 1/threads when one
+   * got it all.
+   */
+  private void printFairness(List<WindowWorker> workers) {
+    double sum = 0;
+    double sumOfSquares = 0;
+    for (WindowWorker worker : workers) {
+      sum += worker.ops;
+      sumOfSquares += (double) worker.ops * worker.ops;
+    }
+    System.out.printf("%s threads=%s: fairness index %.3f\n",
+        factory, threads, sum * sum / (workers.size() * sumOfSquares));
+    for (int i = 0; i < workers.size(); i++) {
+      WindowWorker worker = workers.get(i);
+      Histogram histogram = worker.histogram;
+      System.out.printf(
+          "  worker %s: %s ops, p50 %s ns, p99 %s ns, p99.9 %s ns, " +
+          "max claim wait %s ns\n",
+          i, worker.ops,
+          histogram.getValueAtPercentile(50.0),
+          histogram.getValueAtPercentile(99.0),
+          histogram.getValueAtPercentile(99.9),
+          worker.maxClaimWaitNanos);
+    }
+  }
+
+  private void printAllocations(List<WindowWorker> workers) {
+    long allocatedBytes = 0;
+    long ops = 0;
+    for (WindowWorker worker : workers) {
+      allocatedBytes += worker.allocatedBytes;
+      ops += worker.ops;
+    }
+    AllocationMeter.print(factory + " threads=" + threads, allocatedBytes, ops);
+  }
+
+  private void printClaimWait(List<WindowWorker> workers) {
+    long totalWait = 0;
+    long maxWait = 0;
+    long ops = 0;
+    for (WindowWorker worker : workers) {
+      totalWait += worker.claimWaitNanos;
+      maxWait = Math.max(maxWait, worker.maxClaimWaitNanos);
+      ops += worker.ops;
+    }
+    double meanWait = totalWait / (double) Math.max(1, ops);
+    System.out.printf(
+        "%s threads/poolSize=%s/%s holdTimeNanos=%s %s: mean claim wait %.1f ns, max %s ns\n",
+        factory, threads, poolSize, holdTimeNanos, layout, meanWait, maxWait);
   }
 
   @Override
@@ -67,66 +158,231 @@ public class MultiThreadedBenchmark implements Benchmark {
     factory.shutdown(pool);
     executor.shutdown();
   }
+
+  /**
+   * Runs claim-release cycles until the deadline it shares with the other
+   * workers of the session, and counts them. Every claimed object is
+   * written to, so objects that share a cache line contend with each other,
+   * which is what the layout parameter compares. The shared {@link Worker}
+   * leaves the objects alone.
+   */
+  private static final class WindowWorker implements Runnable {
+    private final PoolFacade pool;
+    private final long holdTimeNanos;
+    private final long deadline;
+    private final CountDownLatch startLatch;
+    private final CountDownLatch endLatch;
+    private final Recorder recorder;
+    private final Histogram histogram;
+    private long ops;
+    private long claimWaitNanos;
+    private long maxClaimWaitNanos;
+    private long allocatedBytes;
+
+    public WindowWorker(PoolFacade pool, long holdTimeNanos, long deadline,
+        CountDownLatch startLatch, CountDownLatch endLatch, Recorder recorder) {
+      this.pool = pool;
+      this.holdTimeNanos = holdTimeNanos;
+      this.deadline = deadline;
+      this.startLatch = startLatch;
+      this.endLatch = endLatch;
+      this.recorder = recorder;
+      this.histogram = LatencyHistograms.create();
+    }
+
+    @Override
+    public void run() {
+      try {
+        startLatch.await();
+        long allocatedBefore = AllocationMeter.threadAllocatedBytes();
+        long start = recorder.begin();
+        while (start - deadline < 0) {
+          Object obj = pool.claim();
+          long wait = System.nanoTime() - start;
+          claimWaitNanos += wait;
+          maxClaimWaitNanos = Math.max(maxClaimWaitNanos, wait);
+          ((MyPoolable) obj).touch();
+          if (holdTimeNanos > 0) {
+            BusyWork.spin(holdTimeNanos);
+          }
+          pool.release(obj);
+          long end = recorder.record(start);
+          histogram.recordValue(end - start);
+          start = end;
+          ops++;
+        }
+        allocatedBytes = AllocationMeter.threadAllocatedBytes() - allocatedBefore;
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+      endLatch.countDown();
+    }
+  }
+  
+  /**
+   * Run a session of the shared {@link Worker} in the given number of
+   * threads, add their recordings to the given recorder, and file their
+   * histograms under the given benchmark arguments. Returns the workers,
+   * when they are done.
+   */
+  static List<Worker> runWorkers(PoolFacade pool, ExecutorService executor,
+      int threads, Recorder recorder, Object[] args) throws InterruptedException {
+    CountDownLatch startLatch = new CountDownLatch(1);
+    CountDownLatch endLatch = new CountDownLatch(threads);
+    List<Recorder> subRecorders = new ArrayList<Recorder>();
+    List<Worker> workers = new ArrayList<Worker>();
+    List<Histogram> histograms = new ArrayList<Histogram>();
+
+    for (int i = 0; i < threads; i++) {
+      Recorder subRecorder = recorder.createBlankCopy();
+      subRecorders.add(subRecorder);
+      Worker worker = new Worker(pool, startLatch, endLatch, subRecorder);
+      workers.add(worker);
+      histograms.add(worker.getHistogram());
+      executor.execute(worker);
+    }
+
+    startLatch.countDown();
+    endLatch.await();
+
+    for (Recorder subRecorder : subRecorders) {
+      recorder.add(subRecorder);
+    }
+    LatencyHistograms.add(histograms, args);
+    return workers;
+  }
   
   public static class Worker implements Runnable {
     private final PoolFacade pool;
+    private final long holdTimeNanos;
     private final CountDownLatch startLatch;
     private final CountDownLatch endLatch;
     private final Recorder recorder;
+    private long claimWaitNanos;
+    private long maxClaimWaitNanos;
+    private long allocatedBytes;
+    private final Histogram histogram;
 
     public Worker(PoolFacade pool, CountDownLatch startLatch,
         CountDownLatch endLatch, Recorder recorder) {
+      this(pool, 0, startLatch, endLatch, recorder);
+    }
+
+    public Worker(PoolFacade pool, long holdTimeNanos,
+        CountDownLatch startLatch, CountDownLatch endLatch, Recorder recorder) {
       this.pool = pool;
+      this.holdTimeNanos = holdTimeNanos;
       this.startLatch = startLatch;
       this.endLatch = endLatch;
       this.recorder = recorder;
+      this.histogram = LatencyHistograms.create();
     }
 
     @Override
     public void run() {
       try {
         startLatch.await();
+        long allocatedBefore = AllocationMeter.threadAllocatedBytes();
         long start = recorder.begin();
         for (int i = 0; i < ITERATIONS; i++) {
-          pool.release(pool.claim());
-          start = recorder.record(start);
+          Object obj = pool.claim();
+          long wait = System.nanoTime() - start;
+          claimWaitNanos += wait;
+          maxClaimWaitNanos = Math.max(maxClaimWaitNanos, wait);
+          if (holdTimeNanos > 0) {
+            BusyWork.spin(holdTimeNanos);
+          }
+          pool.release(obj);
+          long end = recorder.record(start);
+          histogram.recordValue(end - start);
+          start = end;
         }
+        allocatedBytes = AllocationMeter.threadAllocatedBytes() - allocatedBefore;
       } catch (Exception e) {
         e.printStackTrace();
       }
       endLatch.countDown();
     }
+
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+
+    public Histogram getHistogram() {
+      return histogram;
+    }
   }
   
   public static void main(String[] args) throws Exception {
+    String titleFormat =
+        "Multi-Threaded Benchmark [poolSize=%3$s, holdTimeNanos=%4$s, layout=%5$s]";
     HtmlChartsReporter chartReporter = new HtmlChartsReporter(
-        new Interpretor(), "Multi-Threaded Benchmark");
+        new Interpretor(), titleFormat);
+    HtmlChartsReporter overcommitReporter = new HtmlChartsReporter(
+        new OvercommitInterpretor(),
+        "Overcommit [holdTimeNanos=%4$s, layout=%5$s]");
+    String perThreadTitleFormat =
+        "Per-Thread [threads=%2$s, poolSize=%3$s, holdTimeNanos=%4$s, layout=%5$s]";
+    TimedThroughputReporter perThreadThroughputReporter =
+        new TimedThroughputReporter(new PerThreadInterpretor(), perThreadTitleFormat);
+    PercentileReporter perThreadPercentileReporter = new PercentileReporter(
+        new PerThreadInterpretor(), perThreadTitleFormat);
+    BreakdownReporter perThreadReporter = new BreakdownReporter(
+        perThreadThroughputReporter, perThreadPercentileReporter);
     PrintingReporter printingReporter = new PrintingReporter();
     WarmupPrintingReporter warmupReporter = new WarmupPrintingReporter();
+    ResultsStore resultsStore = new ResultsStore();
+    CsvJsonReporter dataReporter = new CsvJsonReporter();
+    PercentileReporter percentileReporter = new PercentileReporter(
+        new Interpretor(), titleFormat);
     Class<? extends Benchmark> benchmarkType = MultiThreadedBenchmark.class;
     String htmlReportFilename = "multi-threaded-results.html";
     
-    // Pre-heat the lot:
-    System.out.println("## Warmup");
-    BenchmarkRunner.run(
-        benchmarkType,
-        warmupReporter, 4, 0);
-    BenchmarkRunner.run(
-        benchmarkType,
-        warmupReporter, 1, 0);
+    if (Boolean.getBoolean("fork")) {
+      // Every pool in its own JVM, with its own warmup.
+      ForkedBenchmarkRunner.run(benchmarkType, chartReporter,
+          overcommitReporter, resultsStore, dataReporter, percentileReporter,
+          perThreadReporter);
+    } else {
+      // Pre-heat the lot:
+      System.out.println("## Warmup");
+      BenchmarkRunner.run(
+          benchmarkType,
+          warmupReporter, 4, 0);
+      BenchmarkRunner.run(
+          benchmarkType,
+          warmupReporter, 1, 0);
+      
+      // The real run:
+      System.out.println("## Benchmark");
+      LatencyHistograms.clear();
+      BenchmarkRunner.run(
+          benchmarkType,
+          printingReporter,
+          new TeeReporter(chartReporter, overcommitReporter,
+              resultsStore, dataReporter, percentileReporter, perThreadReporter),
+          5, 0);
+    }
     
-    // The real run:
-    System.out.println("## Benchmark");
-    BenchmarkRunner.run(
-        benchmarkType,
-        printingReporter,
-        chartReporter,
-        5, 0);
+    String report = perThreadPercentileReporter.addTo(
+        perThreadThroughputReporter.addTo("<html><body>\n</body></html>\n"));
+    File file = new File("multi-threaded-per-thread.html");
+    if (!file.exists()) file.createNewFile();
+    Files.write(file.toPath(), report.getBytes("UTF-8"));
     
     chartReporter.addChartRender(new ThroughputChart("Multi-Threaded Benchmark", "Threads", "Ops/Sec"));
     chartReporter.addChartRender(new LatencyHistogramChart("Latency Histograms", "Threads"));
-    String report = chartReporter.generateReport();
-    File file = new File(htmlReportFilename);
+    report = percentileReporter.addTo(chartReporter.generateReport());
+    file = new File(htmlReportFilename);
+    if (!file.exists()) file.createNewFile();
+    Files.write(file.toPath(), report.getBytes("UTF-8"));
+    dataReporter.writeFiles("multi-threaded-results");
+    percentileReporter.writeFiles("multi-threaded-results");
+    
+    overcommitReporter.addChartRender(new ThroughputChart("Overcommit Throughput", "Threads/Pool size", "Ops/Sec"));
+    overcommitReporter.addChartRender(new LatencyHistogramChart("Overcommit Latency Histograms", "Threads/Pool size"));
+    report = overcommitReporter.generateReport();
+    file = new File("multi-threaded-overcommit.html");
     if (!file.exists()) file.createNewFile();
     Files.write(file.toPath(), report.getBytes("UTF-8"));
   }
@@ -146,4 +402,45 @@ public class MultiThreadedBenchmark implements Benchmark {
       return String.valueOf(args[0]);
     }
   }
+  
+  /**
+   * Plots against the ratio of threads to pool size, so runs with different
+   * pool sizes line up by how overcommitted the pool is.
+   */
+  private static final class OvercommitInterpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Multi-Threaded Overcommit";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      Double ratio = ((Integer) args[1]).doubleValue() / (Integer) args[2];
+      return (Comparable<Object>) (Comparable<?>) ratio;
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return String.valueOf(args[0]);
+    }
+  }
+  
+  /**
+   * Plots every worker thread on its own, so threads that lose out on
+   * claims stand out from the rest.
+   */
+  private static final class PerThreadInterpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Multi-Threaded Per-Thread";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[5];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return String.valueOf(args[0]);
+    }
+  }
 }
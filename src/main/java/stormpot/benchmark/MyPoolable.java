@@ -9,13 +9,45 @@ public class MyPoolable implements Poolable {
   private static final AtomicInteger COUNTER = new AtomicInteger();
   
   private Slot slot;
+  private Clock clock;
   private long allocated;
   private int id;
+  private byte[] payload;
+  private long uses;
   
   public MyPoolable(Slot slot) {
+    this(slot, Clock.system);
+  }
+  
+  public MyPoolable(Slot slot, Clock clock) {
+    this(slot, clock, 0);
+  }
+  
+  /**
+   * Create an object that also holds the given number of bytes, to make it
+   * as expensive to allocate and collect as the objects we want to pool.
+   */
+  public MyPoolable(Slot slot, Clock clock, int payloadBytes) {
     this.slot = slot;
-    this.allocated = System.currentTimeMillis();
+    this.clock = clock;
+    this.allocated = clock.currentTimeMillis();
     this.id = COUNTER.incrementAndGet();
+    if (payloadBytes > 0) {
+      this.payload = new byte[payloadBytes];
+    }
+  }
+
+  /**
+   * Create an object that is not part of any pool, for the
+   * {@link PoolFactory#nopool} entry that allocates one for every claim. It
+   * has no slot, id or allocation time, since those take a shared counter
+   * and a clock read that plain allocation would not pay for.
+   */
+  protected MyPoolable(int payloadBytes) {
+    this.clock = Clock.system;
+    if (payloadBytes > 0) {
+      this.payload = new byte[payloadBytes];
+    }
   }
 
   @Override
@@ -23,8 +55,17 @@ public class MyPoolable implements Poolable {
     slot.release(this);
   }
   
+  /**
+   * Write to the object, like a user of a pooled resource would. Objects
+   * written by different threads may share cache lines with each other,
+   * unless they are padded.
+   */
+  public void touch() {
+    uses++;
+  }
+  
   public boolean olderThan(long timeMillis) {
-    return allocated + timeMillis < System.currentTimeMillis();
+    return allocated + timeMillis < clock.currentTimeMillis();
   }
   
   @Override
@@ -0,0 +1,248 @@
+package stormpot.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.HdrHistogram.Histogram;
+import org.benchkit.Benchmark;
+import org.benchkit.BenchmarkRunner;
+import org.benchkit.Param;
+import org.benchkit.PrintingReporter;
+import org.benchkit.Recorder;
+import org.benchkit.WarmupPrintingReporter;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+import org.benchkit.htmlchartsreporter.HtmlChartsReporter;
+import org.benchkit.htmlchartsreporter.LatencyHistogramChart;
+import org.benchkit.htmlchartsreporter.ThroughputChart;
+
+/**
+ * An open-loop version of the {@link MultiThreadedBenchmark}: instead of
+ * claiming as fast as they can, the workers claim on a fixed schedule, at a
+ * rate that is a given percentage of the throughput the pool can sustain.
+ * <p>
+ * The latency of every claim is measured from the time it was scheduled to
+ * start, rather than the time it actually started, so a stalled claim also
+ * counts against the claims that queued up behind it. This avoids the
+ * coordinated omission of closed-loop benchmarks.
+ * <p>
+ * The saturation throughput is measured with a closed-loop run in setUp,
+ * after a couple of closed-loop runs that warm up the pool and the JIT, so
+ * the target rates are a fraction of the warmed-up peak.
+ */
+public class OpenLoopBenchmark implements Benchmark {
+  private static final int ITERATIONS = 200 * 1000;
+  private static final int CALIBRATION_ITERATIONS = 500 * 1000;
+  private static final int CALIBRATION_WARMUPS = 2;
+
+  private final Object[] args;
+  private final PoolFactory factory;
+  private final int threads;
+  private final int load;
+  private ExecutorService executor;
+  private PoolFacade pool;
+  private long intervalNanos;
+
+  public OpenLoopBenchmark(
+      @Param(value = "pools", defaults = "stack,generic,queue,blaze,tlcache,furious,ring,clq,deque") PoolFactory factory,
+      @Param(value = "threads", defaults = "1,2,4,8") int threads,
+      @Param(value = "load", defaults = "50,80,95") int load) {
+    this.args = new Object[] {factory, threads, load};
+    this.factory = factory;
+    this.threads = threads;
+    this.load = load;
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    executor = Executors.newFixedThreadPool(threads);
+    pool = factory.create(10, 1000);
+    intervalNanos = calibrate();
+  }
+
+  /**
+   * Measure the saturation throughput, and work out how far apart each
+   * worker must schedule its claims to hit the target load.
+   */
+  private long calibrate() throws Exception {
+    for (int i = 0; i < CALIBRATION_WARMUPS; i++) {
+      runClosedLoop();
+    }
+    long elapsed = runClosedLoop();
+
+    double saturationOpsPerNano =
+        (double) CALIBRATION_ITERATIONS * threads / elapsed;
+    double targetOpsPerNano = saturationOpsPerNano * load / 100.0;
+    System.out.printf("%s threads=%s: saturation %.0f ops/sec, target %.0f ops/sec\n",
+        factory, threads, saturationOpsPerNano * 1e9, targetOpsPerNano * 1e9);
+    return Math.max(1, (long) (threads / targetOpsPerNano));
+  }
+
+  /**
+   * Claim and release as fast as possible in all the threads, and return
+   * how long it took.
+   */
+  private long runClosedLoop() throws Exception {
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final CountDownLatch endLatch = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            startLatch.await();
+            for (int j = 0; j < CALIBRATION_ITERATIONS; j++) {
+              pool.release(pool.claim());
+            }
+          } catch (Exception e) {
+            e.printStackTrace();
+          }
+          endLatch.countDown();
+        }
+      });
+    }
+    long start = System.nanoTime();
+    startLatch.countDown();
+    endLatch.await();
+    return System.nanoTime() - start;
+  }
+
+  @Override
+  public void runSession(Recorder recorder) throws Exception {
+    CountDownLatch startLatch = new CountDownLatch(1);
+    CountDownLatch endLatch = new CountDownLatch(threads);
+    List<Recorder> subRecorders = new ArrayList<Recorder>();
+    List<Histogram> histograms = new ArrayList<Histogram>();
+
+    for (int i = 0; i < threads; i++) {
+      Recorder subRecorder = recorder.createBlankCopy();
+      subRecorders.add(subRecorder);
+      Worker worker = new Worker(
+          pool, intervalNanos, startLatch, endLatch, subRecorder);
+      histograms.add(worker.histogram);
+      executor.execute(worker);
+    }
+
+    startLatch.countDown();
+    endLatch.await();
+
+    for (Recorder subRecorder : subRecorders) {
+      recorder.add(subRecorder);
+    }
+    LatencyHistograms.add(histograms, args);
+    printPercentiles(histograms);
+  }
+
+  private void printPercentiles(List<Histogram> histograms) {
+    Histogram all = LatencyHistograms.create();
+    for (Histogram histogram : histograms) {
+      all.add(histogram);
+    }
+    System.out.printf("%s threads=%s load=%s%%: p50 %s ns, p99 %s ns, p99.9 %s ns, max %s ns\n",
+        factory, threads, load,
+        all.getValueAtPercentile(50.0), all.getValueAtPercentile(99.0),
+        all.getValueAtPercentile(99.9), all.getMaxValue());
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    factory.shutdown(pool);
+    executor.shutdown();
+  }
+
+  public static class Worker implements Runnable {
+    private final PoolFacade pool;
+    private final long intervalNanos;
+    private final CountDownLatch startLatch;
+    private final CountDownLatch endLatch;
+    private final Recorder recorder;
+    private final Histogram histogram;
+
+    public Worker(PoolFacade pool, long intervalNanos,
+        CountDownLatch startLatch, CountDownLatch endLatch, Recorder recorder) {
+      this.pool = pool;
+      this.intervalNanos = intervalNanos;
+      this.startLatch = startLatch;
+      this.endLatch = endLatch;
+      this.recorder = recorder;
+      this.histogram = LatencyHistograms.create();
+    }
+
+    @Override
+    public void run() {
+      try {
+        startLatch.await();
+        recorder.begin();
+        long intended = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+          while (System.nanoTime() - intended < 0) {
+            // Busy-wait for the scheduled start; sleeping is far too coarse.
+          }
+          pool.release(pool.claim());
+          long end = recorder.record(intended);
+          histogram.recordValue(end - intended);
+          intended += intervalNanos;
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+      endLatch.countDown();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String titleFormat = "Open-Loop Benchmark [load=%3$s%%]";
+    HtmlChartsReporter chartReporter = new HtmlChartsReporter(
+        new Interpretor(), titleFormat);
+    chartReporter.addChartRender(new ThroughputChart("Throughput", "Threads", "Ops/Sec"));
+    chartReporter.addChartRender(new LatencyHistogramChart("Latency Histograms", "Threads"));
+    PrintingReporter printingReporter = new PrintingReporter();
+    WarmupPrintingReporter warmupReporter = new WarmupPrintingReporter();
+    ResultsStore resultsStore = new ResultsStore();
+    CsvJsonReporter dataReporter = new CsvJsonReporter();
+    PercentileReporter percentileReporter = new PercentileReporter(
+        new Interpretor(), titleFormat);
+
+    // Pre-heat the lot:
+    System.out.println("## Warmup");
+    BenchmarkRunner.run(
+        OpenLoopBenchmark.class,
+        warmupReporter, 1, 0);
+
+    // The real run:
+    System.out.println("## Benchmark");
+    LatencyHistograms.clear();
+    BenchmarkRunner.run(
+        OpenLoopBenchmark.class,
+        printingReporter,
+        new TeeReporter(chartReporter, resultsStore, dataReporter, percentileReporter),
+        5, 0);
+
+    String report = percentileReporter.addTo(chartReporter.generateReport());
+    File file = new File("open-loop-results.html");
+    if (!file.exists()) file.createNewFile();
+    Files.write(file.toPath(), report.getBytes("UTF-8"));
+    dataReporter.writeFiles("open-loop-results");
+    percentileReporter.writeFiles("open-loop-results");
+  }
+
+  private static final class Interpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Open-Loop Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[1];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return String.valueOf(args[0]);
+    }
+  }
+}
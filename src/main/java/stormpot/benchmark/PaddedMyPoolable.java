@@ -0,0 +1,22 @@
+package stormpot.benchmark;
+
+import stormpot.Slot;
+
+/**
+ * A {@link MyPoolable} followed by two cache lines of padding, so that no
+ * two objects share a cache line, even when they are allocated next to each
+ * other. The JVM puts the fields of a subclass after those of its super
+ * class, but {@link Layout#verifyPadding()} checks that it really did.
+ */
+public class PaddedMyPoolable extends MyPoolable {
+  long p00, p01, p02, p03, p04, p05, p06, p07;
+  long p10, p11, p12, p13, p14, p15, p16, p17;
+
+  public PaddedMyPoolable(Slot slot, Clock clock, int payloadBytes) {
+    super(slot, clock, payloadBytes);
+  }
+
+  PaddedMyPoolable(int payloadBytes) {
+    super(payloadBytes);
+  }
+}
@@ -0,0 +1,94 @@
+package stormpot.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.benchkit.Benchmark;
+import org.benchkit.Param;
+import org.benchkit.Recorder;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+
+/**
+ * The {@link MultiThreadedBenchmark} workload with objects of increasing
+ * size, against the {@link PoolFactory#nopool} entry that allocates a new
+ * object for every claim. Where the pools overtake plain allocation in the
+ * throughput chart, is the object size where pooling starts to pay off.
+ * <p>
+ * Each session also prints the garbage collection time and the bytes
+ * allocated per claim. The collections go in the results, and the report
+ * charts the GC time by object size next to the throughput.
+ */
+public class PayloadSizeBenchmark implements Benchmark {
+  private final Object[] args;
+  private final PoolFactory factory;
+  private final int payloadBytes;
+  private final int threads;
+  private ExecutorService executor;
+  private PoolFacade pool;
+
+  public PayloadSizeBenchmark(
+      @Param(value = "pools", defaults = "nopool,stack,generic,queue,blaze,tlcache,furious,ring,clq,deque") PoolFactory factory,
+      @Param(value = "payloadBytes", defaults = "0,64,1024,8192,65536") int payloadBytes,
+      @Param(value = "threads", defaults = "1,4") int threads) {
+    this.args = new Object[] {factory, payloadBytes, threads};
+    this.factory = factory;
+    this.payloadBytes = payloadBytes;
+    this.threads = threads;
+  }
+
+  @Override
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(threads);
+    pool = factory.create(10, 1000, new Allocation().setPayloadBytes(payloadBytes));
+  }
+
+  @Override
+  public void runSession(Recorder recorder) throws Exception {
+    long gcCountBefore = GcMeter.collectionCount();
+    long gcTimeBefore = GcMeter.collectionTimeMillis();
+    List<MultiThreadedBenchmark.Worker> workers =
+        MultiThreadedBenchmark.runWorkers(pool, executor, threads, recorder, args);
+    long gcCount = GcMeter.collectionCount() - gcCountBefore;
+    long gcTime = GcMeter.collectionTimeMillis() - gcTimeBefore;
+
+    long allocatedBytes = 0;
+    for (MultiThreadedBenchmark.Worker worker : workers) {
+      allocatedBytes += worker.getAllocatedBytes();
+    }
+    GcMeter.add(gcCount, gcTime, args);
+    long ops = (long) MultiThreadedBenchmark.ITERATIONS * threads;
+    System.out.printf(
+        "%s payloadBytes=%s threads=%s: %.2f bytes/op allocated, %s collections, %s ms gc\n",
+        factory, payloadBytes, threads, allocatedBytes / (double) ops, gcCount, gcTime);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    factory.shutdown(pool);
+    executor.shutdown();
+  }
+
+  public static void main(String[] args) throws Exception {
+    String titleFormat = "Payload Size Benchmark [threads=%3$s]";
+    ReportingRunner.run(PayloadSizeBenchmark.class, new Interpretor(),
+        titleFormat, "Payload (bytes)", 2, "payload-size-results",
+        new GcTimeReporter(new Interpretor(), titleFormat));
+  }
+
+  private static final class Interpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Payload Size Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[1];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return String.valueOf(args[0]);
+    }
+  }
+}
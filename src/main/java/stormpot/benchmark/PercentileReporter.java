@@ -0,0 +1,232 @@
+package stormpot.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.benchkit.Recorder;
+import org.benchkit.Reporter;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+
+/**
+ * Draws the latency percentile distributions from {@link LatencyHistograms}
+ * as charts, one for every title, like the {@link
+ * org.benchkit.htmlchartsreporter.HtmlChartsReporter} does, with a line for
+ * every series and x-value. The x-axis is logarithmic in the distance to
+ * 100%, so each step to the right is another nine: 90%, 99%, 99.9% and so
+ * on. That's where the tail latencies are.
+ * <p>
+ * The charts are inline SVG, and are added to the end of the report of the
+ * HtmlChartsReporter with {@link #addTo(String)}. The spectra themselves
+ * can be written out as CSV with {@link #writeFiles(String)}.
+ */
+public class PercentileReporter implements Reporter {
+  private static final int TICKS_PER_HALF_DISTANCE = 5;
+  // Nothing past 99.9999% is drawn.
+  private static final int MAX_NINES = 6;
+  private static final int WIDTH = 900;
+  private static final int HEIGHT = 450;
+  private static final int LEFT = 80;
+  private static final int RIGHT = 250;
+  private static final int TOP = 40;
+  private static final int BOTTOM = 40;
+  private static final String[] COLORS = {
+      "#1f77b4", "#ff7f0e", "#2ca02c", "#d62728", "#9467bd",
+      "#8c564b", "#e377c2", "#7f7f7f", "#bcbd22", "#17becf"};
+
+  private final DataInterpretor interpretor;
+  private final String titleFormat;
+  private final Map<String, Map<String, Histogram>> charts =
+      new LinkedHashMap<String, Map<String, Histogram>>();
+
+  public PercentileReporter(DataInterpretor interpretor, String titleFormat) {
+    this.interpretor = interpretor;
+    this.titleFormat = titleFormat;
+  }
+
+  @Override
+  public synchronized void report(String name, Object[] args, Recorder recorder) {
+    Histogram histogram = LatencyHistograms.get(args);
+    if (histogram == null || histogram.getTotalCount() == 0) {
+      return;
+    }
+    String title = String.format(titleFormat, args) + " Latency Percentiles";
+    Map<String, Histogram> lines = charts.get(title);
+    if (lines == null) {
+      lines = new LinkedHashMap<String, Histogram>();
+      charts.put(title, lines);
+    }
+    String line = interpretor.getSeriesName(args) + " " + interpretor.getXvalue(args);
+    // The histograms include everything recorded so far, so the latest
+    // report of a configuration replaces the earlier ones.
+    lines.put(line, histogram);
+  }
+
+  /**
+   * Add the percentile charts to the end of the body of the given HTML
+   * report.
+   */
+  public String addTo(String report) {
+    return insertBeforeBody(report, generateCharts());
+  }
+
+  static String insertBeforeBody(String report, String html) {
+    int end = report.toLowerCase(Locale.ROOT).lastIndexOf("</body>");
+    if (end == -1) {
+      return report + html;
+    }
+    return report.substring(0, end) + html + report.substring(end);
+  }
+
+  public synchronized String generateCharts() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, Map<String, Histogram>> chart : charts.entrySet()) {
+      appendChart(sb, chart.getKey(), chart.getValue());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Write the percentile spectra to &lt;baseName&gt;-percentiles.csv, with a
+   * row for every step of every line.
+   */
+  public synchronized void writeFiles(String baseName) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    sb.append("chart,line,percentile,latencyNanos,count\n");
+    for (Map.Entry<String, Map<String, Histogram>> chart : charts.entrySet()) {
+      for (Map.Entry<String, Histogram> line : chart.getValue().entrySet()) {
+        for (HistogramIterationValue value :
+            line.getValue().percentiles(TICKS_PER_HALF_DISTANCE)) {
+          sb.append(quote(chart.getKey())).append(',');
+          sb.append(quote(line.getKey())).append(',');
+          sb.append(value.getPercentileLevelIteratedTo()).append(',');
+          sb.append(value.getValueIteratedTo()).append(',');
+          sb.append(value.getTotalCountToThisValue()).append('\n');
+        }
+      }
+    }
+    File file = new File(baseName + "-percentiles.csv");
+    Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void appendChart(
+      StringBuilder sb, String title, Map<String, Histogram> lines) {
+    List<String> names = new ArrayList<String>();
+    List<double[][]> points = new ArrayList<double[][]>();
+    double maxMicros = 0;
+    for (Map.Entry<String, Histogram> line : lines.entrySet()) {
+      double[][] linePoints = spectrum(line.getValue());
+      for (double[] point : linePoints) {
+        maxMicros = Math.max(maxMicros, point[1]);
+      }
+      names.add(line.getKey());
+      points.add(linePoints);
+    }
+    maxMicros = Math.max(maxMicros, 1);
+    int plotWidth = WIDTH - LEFT - RIGHT;
+    int plotHeight = HEIGHT - TOP - BOTTOM;
+
+    sb.append("<div class=\"percentiles\"><svg xmlns=\"http://www.w3.org/2000/svg\"");
+    sb.append(" width=\"").append(WIDTH).append("\" height=\"").append(HEIGHT);
+    sb.append("\" font-family=\"sans-serif\" font-size=\"12\">\n");
+    sb.append("<text x=\"").append(WIDTH / 2).append("\" y=\"20\"");
+    sb.append(" text-anchor=\"middle\" font-size=\"14\">");
+    sb.append(escape(title)).append("</text>\n");
+
+    // Axes and grid: one vertical line for every nine, five horizontal.
+    for (int nines = 0; nines <= MAX_NINES; nines++) {
+      double x = LEFT + plotWidth * nines / (double) MAX_NINES;
+      sb.append(String.format(Locale.ROOT,
+          "<line x1=\"%.1f\" y1=\"%d\" x2=\"%.1f\" y2=\"%d\" stroke=\"#ddd\"/>\n",
+          x, TOP, x, TOP + plotHeight));
+      sb.append(String.format(Locale.ROOT,
+          "<text x=\"%.1f\" y=\"%d\" text-anchor=\"middle\">%s</text>\n",
+          x, TOP + plotHeight + 16, ninesLabel(nines)));
+    }
+    for (int i = 0; i <= 4; i++) {
+      double y = TOP + plotHeight - plotHeight * i / 4.0;
+      sb.append(String.format(Locale.ROOT,
+          "<line x1=\"%d\" y1=\"%.1f\" x2=\"%d\" y2=\"%.1f\" stroke=\"#ddd\"/>\n",
+          LEFT, y, LEFT + plotWidth, y));
+      sb.append(String.format(Locale.ROOT,
+          "<text x=\"%d\" y=\"%.1f\" text-anchor=\"end\">%.1f &#181;s</text>\n",
+          LEFT - 6, y + 4, maxMicros * i / 4.0));
+    }
+    sb.append(String.format(Locale.ROOT,
+        "<text x=\"%d\" y=\"%d\" text-anchor=\"middle\">Percentile</text>\n",
+        LEFT + plotWidth / 2, HEIGHT - 4));
+
+    for (int i = 0; i < points.size(); i++) {
+      String color = color(i);
+      sb.append("<polyline fill=\"none\" stroke-width=\"1.5\" stroke=\"");
+      sb.append(color).append("\" points=\"");
+      for (double[] point : points.get(i)) {
+        double x = LEFT + plotWidth * point[0] / MAX_NINES;
+        double y = TOP + plotHeight - plotHeight * point[1] / maxMicros;
+        sb.append(String.format(Locale.ROOT, "%.1f,%.1f ", x, y));
+      }
+      sb.append("\"/>\n");
+      int legendY = TOP + 10 + i * 16;
+      sb.append(String.format(Locale.ROOT,
+          "<rect x=\"%d\" y=\"%d\" width=\"10\" height=\"10\" fill=\"%s\"/>\n",
+          LEFT + plotWidth + 15, legendY - 9, color));
+      sb.append(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%d\">%s</text>\n",
+          LEFT + plotWidth + 30, legendY, escape(names.get(i))));
+    }
+    sb.append("</svg></div>\n");
+  }
+
+  /**
+   * The percentile spectrum of the histogram, as pairs of nines (the
+   * logarithm of the distance to 100%) and latency in microseconds.
+   */
+  private static double[][] spectrum(Histogram histogram) {
+    List<double[]> points = new ArrayList<double[]>();
+    for (HistogramIterationValue value :
+        histogram.percentiles(TICKS_PER_HALF_DISTANCE)) {
+      double percentile = value.getPercentileLevelIteratedTo();
+      double nines = percentile >= 100.0
+          ? MAX_NINES : Math.min(MAX_NINES, Math.log10(100.0 / (100.0 - percentile)));
+      points.add(new double[] {nines, value.getValueIteratedTo() / 1000.0});
+    }
+    return points.toArray(new double[points.size()][]);
+  }
+
+  private static String ninesLabel(int nines) {
+    if (nines == 0) {
+      return "0%";
+    }
+    if (nines == 1) {
+      return "90%";
+    }
+    StringBuilder sb = new StringBuilder("99.");
+    for (int i = 2; i < nines; i++) {
+      sb.append('9');
+    }
+    return nines == 2 ? "99%" : sb.append('%').toString();
+  }
+
+  static String color(int index) {
+    return COLORS[index % COLORS.length];
+  }
+
+  static String escape(String s) {
+    return s.replace("&", "&amp;").replace("<", "&lt;")
+        .replace(">", "&gt;").replace("\"", "&quot;");
+  }
+
+  private static String quote(String s) {
+    if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0) {
+      return '"' + s.replace("\"", "\"\"") + '"';
+    }
+    return s;
+  }
+}
@@ -3,4 +3,14 @@ package stormpot.benchmark;
 public interface PoolFacade {
   Object claim() throws Exception;
   void release(Object obj) throws Exception;
+  
+  /**
+   * Claim n objects into the first n elements of the given array.
+   */
+  void claimBatch(int n, Object[] out) throws Exception;
+  
+  /**
+   * Release the objects in the first n elements of the given array.
+   */
+  void releaseBatch(Object[] objs, int n) throws Exception;
 }
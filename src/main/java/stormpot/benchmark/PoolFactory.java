@@ -1,6 +1,16 @@
 package stormpot.benchmark;
 
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.pool.BaseObjectPool;
 import org.apache.commons.pool.PoolableObjectFactory;
@@ -16,6 +26,8 @@ import nf.fr.eraasoft.pool.impl.PoolControler;
 import stormpot.Allocator;
 import stormpot.Config;
 import stormpot.LifecycledPool;
+import stormpot.LifecycledResizablePool;
+import stormpot.Poolable;
 import stormpot.Slot;
 import stormpot.TimeExpiration;
 import stormpot.Timeout;
@@ -28,76 +40,270 @@ public enum PoolFactory {
   
   queue {
     @Override
-    public PoolFacade create(int size, long objTtl) {
-      Config<MyPoolable> config = createStormpotConfig(size, objTtl);
+    protected PoolFacade createPool(int size, long objTtl, Allocation allocation) {
+      Config<MyPoolable> config = createStormpotConfig(size, objTtl, allocation);
       return new StormpotPoolFacade(new QueuePool<MyPoolable>(config));
     }
 
     @Override
-    public void shutdown(PoolFacade facade) throws Exception {
+    protected void shutdownPool(PoolFacade facade) throws Exception {
       ((StormpotPoolFacade) facade).shutdown();
     }
+
+    @Override
+    protected boolean setPoolTargetSize(PoolFacade facade, int size) {
+      ((StormpotPoolFacade) facade).setTargetSize(size);
+      return true;
+    }
   },
   blaze {
     @Override
-    public PoolFacade create(int size, long objTtl) {
-      Config<MyPoolable> config = createStormpotConfig(size, objTtl);
+    protected PoolFacade createPool(int size, long objTtl, Allocation allocation) {
+      Config<MyPoolable> config = createStormpotConfig(size, objTtl, allocation);
       return new StormpotPoolFacade(new BlazePool<MyPoolable>(config));
     }
 
     @Override
-    public void shutdown(PoolFacade facade) throws Exception {
+    protected void shutdownPool(PoolFacade facade) throws Exception {
       ((StormpotPoolFacade) facade).shutdown();
     }
+
+    @Override
+    protected boolean setPoolTargetSize(PoolFacade facade, int size) {
+      ((StormpotPoolFacade) facade).setTargetSize(size);
+      return true;
+    }
+  },
+  tlcache {
+    @Override
+    protected PoolFacade createPool(int size, long objTtl, Allocation allocation) {
+      Config<MyPoolable> config = createStormpotConfig(size, objTtl, allocation);
+      return new ThreadLocalCachingPoolFacade(
+          new BlazePool<MyPoolable>(config), objTtl);
+    }
+
+    @Override
+    protected void shutdownPool(PoolFacade facade) throws Exception {
+      ((StormpotPoolFacade) facade).shutdown();
+    }
+
+    @Override
+    protected boolean setPoolTargetSize(PoolFacade facade, int size) {
+      ((StormpotPoolFacade) facade).setTargetSize(size);
+      return true;
+    }
+  },
+  striped {
+    @Override
+    protected PoolFacade createPool(int size, long objTtl, Allocation allocation) {
+      int stripes = Math.min(size, Runtime.getRuntime().availableProcessors());
+      return createStriped(stripes, size, objTtl, allocation);
+    }
+
+    @Override
+    protected void shutdownPool(PoolFacade facade) throws Exception {
+      ((StripedPoolFacade) facade).shutdown();
+    }
+
+    @Override
+    protected boolean setPoolTargetSize(PoolFacade facade, int size) {
+      ((StripedPoolFacade) facade).setTargetSize(size);
+      return true;
+    }
   },
   furious {
     @Override
-    public PoolFacade create(int size, final long objTtl) {
-      PoolSettings<MyPoolable> settings = createFuriousSettings(size, objTtl);
+    protected PoolFacade createPool(int size, long objTtl, Allocation allocation) {
+      PoolSettings<MyPoolable> settings = createFuriousSettings(size, objTtl, allocation);
       return new FuriousPoolFacade(settings.pool());
     }
 
     @Override
-    public void shutdown(PoolFacade facade) throws Exception {
+    protected void shutdownPool(PoolFacade facade) throws Exception {
       PoolControler.shutdown();
     }
   },
   stack {
     @Override
-    public PoolFacade create(int size, long objTtl) {
-      PoolableObjectFactory<MyPoolable> factory = new MyPoolableObjectFactory(objTtl);
+    protected PoolFacade createPool(int size, long objTtl, Allocation allocation) {
+      PoolableObjectFactory<MyPoolable> factory = new MyPoolableObjectFactory(objTtl, allocation);
       return new CommonsPoolFacade(new StackObjectPool<MyPoolable>(factory, size));
     }
   },
   generic {
     @Override
-    public PoolFacade create(int size, long objTtl) {
-      PoolableObjectFactory<MyPoolable> factory = new MyPoolableObjectFactory(objTtl);
-      return new CommonsPoolFacade(new GenericObjectPool<MyPoolable>(factory, size));
+    protected PoolFacade createPool(int size, long objTtl, Allocation allocation) {
+      PoolableObjectFactory<MyPoolable> factory = new MyPoolableObjectFactory(objTtl, allocation);
+      GenericObjectPool<MyPoolable> pool =
+          new GenericObjectPool<MyPoolable>(factory, size);
+      pool.setTestOnBorrow(true);
+      return new CommonsPoolFacade(pool);
+    }
+  },
+  
+  // BASELINES
+  
+  ring {
+    @Override
+    protected PoolFacade createPool(int size, long objTtl, Allocation allocation) {
+      Queue<MyPoolable> queue = new ManyToManyConcurrentArrayQueue<MyPoolable>(size);
+      return new QueuePoolFacade(queue, size, objTtl, allocation);
+    }
+  },
+  clq {
+    @Override
+    protected PoolFacade createPool(int size, long objTtl, Allocation allocation) {
+      Queue<MyPoolable> queue = new ConcurrentLinkedQueue<MyPoolable>();
+      return new QueuePoolFacade(queue, size, objTtl, allocation);
+    }
+  },
+  deque {
+    @Override
+    protected PoolFacade createPool(int size, long objTtl, Allocation allocation) {
+      BlockingDeque<MyPoolable> deque = new LinkedBlockingDeque<MyPoolable>(size);
+      return new BlockingDequePoolFacade(deque, size, objTtl, allocation);
+    }
+  },
+  /**
+   * Not a pool at all: every claim allocates a new object, and every release
+   * leaves it to the garbage collector. Ignores the size and TTL.
+   */
+  nopool {
+    @Override
+    protected PoolFacade createPool(int size, long objTtl, Allocation allocation) {
+      return new NoPoolFacade(allocation);
     }
   };
   
+  private static final boolean INSTRUMENT = Boolean.getBoolean("instrument");
+  
   
   // INTERFACE
   
-  public abstract PoolFacade create(int size, long objTtl);
+  public PoolFacade create(int size, long objTtl) {
+    return create(size, objTtl, new Allocation());
+  }
+  
+  /**
+   * Create a pool, that is instrumented with {@link PoolMetrics} if the
+   * "instrument" system property is true.
+   */
+  public PoolFacade create(int size, long objTtl, Allocation allocation) {
+    return create(size, objTtl, allocation, INSTRUMENT);
+  }
+  
+  /**
+   * Create a pool, optionally wrapped in an {@link InstrumentedPoolFacade}
+   * whose metrics are registered as an MBean until the pool is shut down.
+   */
+  public PoolFacade create(
+      int size, long objTtl, Allocation allocation, boolean instrumented) {
+    if (!instrumented) {
+      return createPool(size, objTtl, allocation);
+    }
+    PoolFacade facade = null;
+    try {
+      PoolMetrics metrics = new PoolMetrics(name());
+      allocation.setMetrics(metrics);
+      facade = createPool(size, objTtl, allocation);
+      metrics.register();
+      return new InstrumentedPoolFacade(facade, metrics);
+    } catch (Exception e) {
+      // Don't leak the pool we just created, and its threads.
+      if (facade != null) {
+        try {
+          shutdownPool(facade);
+        } catch (Exception shutdownFailure) {
+          e.addSuppressed(shutdownFailure);
+        }
+      }
+      throw new IllegalStateException("Could not instrument " + this + " pool", e);
+    }
+  }
   
   public void shutdown(PoolFacade facade) throws Exception {
+    if (facade instanceof InstrumentedPoolFacade) {
+      InstrumentedPoolFacade instrumented = (InstrumentedPoolFacade) facade;
+      instrumented.getMetrics().unregister();
+      facade = instrumented.getDelegate();
+    }
+    shutdownPool(facade);
+  }
+  
+  /**
+   * Change the number of objects the pool should have, if the pool supports
+   * resizing. Returns false if it does not.
+   */
+  public boolean setTargetSize(PoolFacade facade, int size) {
+    if (facade instanceof InstrumentedPoolFacade) {
+      facade = ((InstrumentedPoolFacade) facade).getDelegate();
+    }
+    return setPoolTargetSize(facade, size);
+  }
+  
+  protected abstract PoolFacade createPool(int size, long objTtl, Allocation allocation);
+  
+  protected void shutdownPool(PoolFacade facade) throws Exception {
+  }
+  
+  protected boolean setPoolTargetSize(PoolFacade facade, int size) {
+    return false;
+  }
+  
+  
+  /**
+   * Create a pool of the given total size, that is split across the given
+   * number of independent BlazePools. Shut it down with the
+   * {@link #striped} entry.
+   */
+  public static PoolFacade createStriped(int stripes, int size, long objTtl) {
+    return createStriped(stripes, size, objTtl, new Allocation());
+  }
+  
+  public static PoolFacade createStriped(
+      int stripes, int size, long objTtl, Allocation allocation) {
+    if (stripes < 1 || stripes > size) {
+      throw new IllegalArgumentException(
+          "Cannot split a pool of " + size + " into " + stripes + " stripes");
+    }
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    LifecycledResizablePool<MyPoolable>[] pools =
+        new LifecycledResizablePool[stripes];
+    int[] sizes = new int[stripes];
+    AtomicIntegerArray claimed =
+        new AtomicIntegerArray(stripes * StripedPoolFacade.STRIDE);
+    for (int i = 0; i < stripes; i++) {
+      sizes[i] = size / stripes + (i < size % stripes ? 1 : 0);
+      Allocator<MyPoolable> allocator = createStripeAllocator(
+          allocation, claimed, i * StripedPoolFacade.STRIDE);
+      Config<MyPoolable> config =
+          createStormpotConfig(sizes[i], objTtl, allocator);
+      pools[i] = new BlazePool<MyPoolable>(config);
+    }
+    return new StripedPoolFacade(pools, sizes, claimed);
   }
   
   
   // IMPLEMENTATION HELPER STUFF
   
-  private static Config<MyPoolable> createStormpotConfig(int size, long objTtl) {
+  private static Config<MyPoolable> createStormpotConfig(
+      int size, long objTtl, final Allocation allocation) {
     Allocator<MyPoolable> allocator = new Allocator<MyPoolable>() {
       @Override
-      public void deallocate(MyPoolable obj) throws Exception {}
+      public void deallocate(MyPoolable obj) throws Exception {
+        allocation.deallocate(obj);
+      }
       
       @Override
       public MyPoolable allocate(Slot slot) throws Exception {
-        return new MyPoolable(slot);
+        return allocation.allocate(slot);
       }
     };
+    return createStormpotConfig(size, objTtl, allocator);
+  }
+  
+  private static Config<MyPoolable> createStormpotConfig(
+      int size, long objTtl, Allocator<MyPoolable> allocator) {
     Config<MyPoolable> config = new Config<MyPoolable>();
     config.setAllocator(allocator);
     config.setSize(size);
@@ -105,13 +311,17 @@ public enum PoolFactory {
     return config;
   }
   
-  private static class StormpotPoolFacade implements PoolFacade {
-    private final LifecycledPool<MyPoolable> pool;
+  private static class StormpotPoolFacade extends BasePoolFacade {
+    final LifecycledResizablePool<MyPoolable> pool;
 
-    public StormpotPoolFacade(LifecycledPool<MyPoolable> pool) {
+    public StormpotPoolFacade(LifecycledResizablePool<MyPoolable> pool) {
       this.pool = pool;
     }
 
+    public void setTargetSize(int size) {
+      pool.setTargetSize(size);
+    }
+
     public void shutdown() throws Exception {
       if (!pool.shutdown().await(new Timeout(10, TimeUnit.SECONDS))) {
         throw new IllegalStateException("Shutdown timeout.");
@@ -129,11 +339,255 @@ public enum PoolFactory {
     }
   }
   
-  private static PoolSettings<MyPoolable> createFuriousSettings(int size, final long objTtl) {
+  /**
+   * Keeps the most recently released object of every thread in a one-entry
+   * cache, so a thread that claims right after a release gets it back
+   * without touching the shared pool state.
+   * <p>
+   * Cached objects are still claimed as far as the BlazePool is concerned,
+   * so other threads steal from the caches when the pool runs dry, and the
+   * TTL is checked here before a cached object is handed out. Expired
+   * objects are released back to the pool, which then reallocates them.
+   */
+  private static class ThreadLocalCachingPoolFacade extends StormpotPoolFacade {
+    private static final Timeout NO_WAIT = new Timeout(0, TimeUnit.MILLISECONDS);
+    private static final Timeout SHORT_WAIT = new Timeout(1, TimeUnit.MILLISECONDS);
+    private static final long CLAIM_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long objTtl;
+    private final List<AtomicReference<MyPoolable>> caches;
+    private final ThreadLocal<AtomicReference<MyPoolable>> cache;
+
+    public ThreadLocalCachingPoolFacade(
+        LifecycledResizablePool<MyPoolable> pool, long objTtl) {
+      super(pool);
+      this.objTtl = objTtl;
+      caches = new CopyOnWriteArrayList<AtomicReference<MyPoolable>>();
+      cache = new ThreadLocal<AtomicReference<MyPoolable>>() {
+        @Override
+        protected AtomicReference<MyPoolable> initialValue() {
+          AtomicReference<MyPoolable> ref = new AtomicReference<MyPoolable>();
+          caches.add(ref);
+          return ref;
+        }
+      };
+    }
+
+    @Override
+    public void shutdown() throws Exception {
+      for (AtomicReference<MyPoolable> ref : caches) {
+        MyPoolable obj = ref.getAndSet(null);
+        if (obj != null) {
+          obj.release();
+        }
+      }
+      super.shutdown();
+    }
+
+    @Override
+    public Object claim() throws Exception {
+      MyPoolable obj = take(cache.get());
+      if (obj != null) {
+        return obj;
+      }
+      long deadline = System.nanoTime() + CLAIM_TIMEOUT_NANOS;
+      Timeout timeout = NO_WAIT;
+      do {
+        obj = pool.claim(timeout);
+        if (obj != null) {
+          return obj;
+        }
+        for (AtomicReference<MyPoolable> ref : caches) {
+          obj = take(ref);
+          if (obj != null) {
+            return obj;
+          }
+        }
+        timeout = SHORT_WAIT;
+      } while (System.nanoTime() - deadline < 0);
+      return null;
+    }
+
+    private MyPoolable take(AtomicReference<MyPoolable> ref) {
+      MyPoolable obj = ref.get();
+      if (obj != null && ref.compareAndSet(obj, null)) {
+        if (!obj.olderThan(objTtl)) {
+          return obj;
+        }
+        obj.release();
+      }
+      return null;
+    }
+
+    @Override
+    public void release(Object obj) {
+      // Only the owning thread puts objects in its cache; other threads only
+      // take them out, so the null check cannot race with another put.
+      AtomicReference<MyPoolable> ref = cache.get();
+      if (ref.get() == null) {
+        ref.lazySet((MyPoolable) obj);
+      } else {
+        ((MyPoolable) obj).release();
+      }
+    }
+  }
+  
+  /**
+   * Gives the objects of a stripe slots that count the releases, so the
+   * {@link StripedPoolFacade} knows how many objects every stripe has out.
+   */
+  private static Allocator<MyPoolable> createStripeAllocator(
+      final Allocation allocation, final AtomicIntegerArray claimed,
+      final int index) {
+    return new Allocator<MyPoolable>() {
+      @Override
+      public void deallocate(MyPoolable obj) throws Exception {
+        allocation.deallocate(obj);
+      }
+      
+      @Override
+      public MyPoolable allocate(final Slot slot) throws Exception {
+        return allocation.allocate(new Slot() {
+          @Override
+          public void release(Poolable obj) {
+            claimed.decrementAndGet(index);
+            slot.release(obj);
+          }
+        });
+      }
+    };
+  }
+  
+  /**
+   * Claims from the stripe picked by the hash of the current thread. When
+   * that stripe is empty, two other stripes are picked at random, and the
+   * one with the most idle objects is tried first, then the other. If both
+   * are empty, every stripe is tried once, and only when they are all empty
+   * does the claim wait a little on the home stripe and try again.
+   * <p>
+   * The idle objects of a stripe are its size less the objects it has out,
+   * which are counted up here on claim, and down by the slots of the stripe
+   * on release. Objects always go back to the stripe they came from, since
+   * they are released through their own slots.
+   */
+  private static class StripedPoolFacade extends BasePoolFacade {
+    // The claimed counts are 16 ints, or a cache line, apart.
+    static final int STRIDE = 16;
+    private static final Timeout NO_WAIT = new Timeout(0, TimeUnit.MILLISECONDS);
+    private static final Timeout SHORT_WAIT = new Timeout(1, TimeUnit.MILLISECONDS);
+    private static final long CLAIM_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final LifecycledResizablePool<MyPoolable>[] stripes;
+    private final int[] sizes;
+    private final AtomicIntegerArray claimed;
+
+    public StripedPoolFacade(LifecycledResizablePool<MyPoolable>[] stripes,
+        int[] sizes, AtomicIntegerArray claimed) {
+      this.stripes = stripes;
+      this.sizes = sizes;
+      this.claimed = claimed;
+    }
+
+    public void setTargetSize(int size) {
+      int count = stripes.length;
+      for (int i = 0; i < count; i++) {
+        int stripeSize = Math.max(1, size / count + (i < size % count ? 1 : 0));
+        sizes[i] = stripeSize;
+        stripes[i].setTargetSize(stripeSize);
+      }
+    }
+
+    public void shutdown() throws Exception {
+      for (LifecycledPool<MyPoolable> stripe : stripes) {
+        if (!stripe.shutdown().await(new Timeout(10, TimeUnit.SECONDS))) {
+          throw new IllegalStateException("Shutdown timeout.");
+        }
+      }
+    }
+
+    @Override
+    public Object claim() throws Exception {
+      int count = stripes.length;
+      int home = homeIndex(count);
+      MyPoolable obj = claim(home, NO_WAIT);
+      if (obj != null) {
+        return obj;
+      }
+      if (count == 1) {
+        return claim(home, new Timeout(1, TimeUnit.SECONDS));
+      }
+      long deadline = System.nanoTime() + CLAIM_TIMEOUT_NANOS;
+      ThreadLocalRandom rnd = ThreadLocalRandom.current();
+      do {
+        int a = rnd.nextInt(count);
+        int b = rnd.nextInt(count - 1);
+        b = b < a ? b : b + 1;
+        if (idle(b) > idle(a)) {
+          int tmp = a;
+          a = b;
+          b = tmp;
+        }
+        obj = claim(a, NO_WAIT);
+        if (obj == null) {
+          obj = claim(b, NO_WAIT);
+        }
+        if (obj == null) {
+          obj = scan(rnd.nextInt(count));
+        }
+        if (obj == null) {
+          obj = claim(home, SHORT_WAIT);
+        }
+      } while (obj == null && System.nanoTime() - deadline < 0);
+      return obj;
+    }
+
+    private MyPoolable scan(int first) throws Exception {
+      int count = stripes.length;
+      for (int i = 0; i < count; i++) {
+        MyPoolable obj = claim((first + i) % count, NO_WAIT);
+        if (obj != null) {
+          return obj;
+        }
+      }
+      return null;
+    }
+
+    private MyPoolable claim(int stripe, Timeout timeout) throws Exception {
+      MyPoolable obj = stripes[stripe].claim(timeout);
+      if (obj != null) {
+        claimed.incrementAndGet(stripe * STRIDE);
+      }
+      return obj;
+    }
+
+    private int idle(int stripe) {
+      return sizes[stripe] - claimed.get(stripe * STRIDE);
+    }
+
+    private static int homeIndex(int count) {
+      long id = Thread.currentThread().getId();
+      int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+      return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % count;
+    }
+
+    @Override
+    public void release(Object obj) {
+      ((MyPoolable) obj).release();
+    }
+  }
+  
+  private static PoolSettings<MyPoolable> createFuriousSettings(
+      int size, final long objTtl, final Allocation allocation) {
     PoolableObjectBase<MyPoolable> allocator = new PoolableObjectBase<MyPoolable>() {
       @Override
       public MyPoolable make() throws PoolException {
-        return new MyPoolable(null);
+        try {
+          return allocation.allocate(null);
+        } catch (Exception e) {
+          PoolException exception = new PoolException(e.getMessage());
+          exception.initCause(e);
+          throw exception;
+        }
       }
       
       @Override
@@ -143,12 +597,17 @@ public enum PoolFactory {
       public boolean validate(MyPoolable t) {
         return !t.olderThan(objTtl);
       }
+
+      @Override
+      public void destroy(MyPoolable t) {
+        allocation.deallocate(t);
+      }
     };
     PoolSettings<MyPoolable> settings = new PoolSettings<MyPoolable>(allocator);
     return settings.min(size).max(size);
   }
   
-  private static class FuriousPoolFacade implements PoolFacade {
+  private static class FuriousPoolFacade extends BasePoolFacade {
     private final ObjectPool<MyPoolable> pool;
 
     public FuriousPoolFacade(ObjectPool<MyPoolable> pool) {
@@ -168,9 +627,11 @@ public enum PoolFactory {
   
   private static class MyPoolableObjectFactory implements PoolableObjectFactory<MyPoolable> {
     private final long maxTtlMillis;
+    private final Allocation allocation;
     
-    public MyPoolableObjectFactory(long maxTtlMillis) {
+    public MyPoolableObjectFactory(long maxTtlMillis, Allocation allocation) {
       this.maxTtlMillis = maxTtlMillis;
+      this.allocation = allocation;
     }
 
     @Override
@@ -179,11 +640,12 @@ public enum PoolFactory {
 
     @Override
     public void destroyObject(MyPoolable obj) throws Exception {
+      allocation.deallocate(obj);
     }
 
     @Override
     public MyPoolable makeObject() throws Exception {
-      return new MyPoolable(null);
+      return allocation.allocate(null);
     }
 
     @Override
@@ -196,7 +658,133 @@ public enum PoolFactory {
     }
   }
   
-  private static class CommonsPoolFacade implements PoolFacade {
+  /**
+   * The simplest pool we can think of: a queue of free objects. Objects are
+   * allocated by the claiming thread, as long as fewer than the pool size
+   * have been allocated, and are checked for expiration when claimed.
+   * Claims that find the queue empty and the pool full spin on the queue
+   * until the timeout.
+   */
+  private static class QueuePoolFacade extends BasePoolFacade {
+    private static final long CLAIM_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Queue<MyPoolable> queue;
+    private final int size;
+    private final long objTtl;
+    private final Allocation allocation;
+    private final AtomicInteger allocated;
+
+    public QueuePoolFacade(Queue<MyPoolable> queue, int size, long objTtl,
+        Allocation allocation) {
+      this.queue = queue;
+      this.size = size;
+      this.objTtl = objTtl;
+      this.allocation = allocation;
+      this.allocated = new AtomicInteger();
+    }
+
+    @Override
+    public Object claim() throws Exception {
+      MyPoolable obj = queue.poll();
+      if (obj == null) {
+        obj = tryAllocate();
+      }
+      if (obj == null) {
+        obj = await();
+      }
+      return obj == null ? null : validate(obj);
+    }
+
+    /**
+     * Wait for an object to be released. Returns null on timeout.
+     */
+    protected MyPoolable await() throws Exception {
+      long deadline = System.nanoTime() + CLAIM_TIMEOUT_NANOS;
+      MyPoolable obj;
+      do {
+        Thread.yield();
+        obj = queue.poll();
+      } while (obj == null && System.nanoTime() - deadline < 0);
+      return obj;
+    }
+
+    private MyPoolable tryAllocate() throws Exception {
+      int count;
+      do {
+        count = allocated.get();
+        if (count >= size) {
+          return null;
+        }
+      } while (!allocated.compareAndSet(count, count + 1));
+      try {
+        return allocation.allocate(null);
+      } catch (Exception e) {
+        allocated.decrementAndGet();
+        throw e;
+      }
+    }
+
+    private MyPoolable validate(MyPoolable obj) throws Exception {
+      if (!obj.olderThan(objTtl)) {
+        return obj;
+      }
+      allocation.deallocate(obj);
+      try {
+        return allocation.allocate(null);
+      } catch (Exception e) {
+        allocated.decrementAndGet();
+        throw e;
+      }
+    }
+
+    @Override
+    public void release(Object obj) {
+      queue.offer((MyPoolable) obj);
+    }
+  }
+  
+  /**
+   * Like the {@link QueuePoolFacade}, but last in, first out, and with the
+   * waiting done by the blocking deque.
+   */
+  private static class BlockingDequePoolFacade extends QueuePoolFacade {
+    private final BlockingDeque<MyPoolable> deque;
+
+    public BlockingDequePoolFacade(BlockingDeque<MyPoolable> deque, int size,
+        long objTtl, Allocation allocation) {
+      super(deque, size, objTtl, allocation);
+      this.deque = deque;
+    }
+
+    @Override
+    protected MyPoolable await() throws Exception {
+      return deque.pollFirst(1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void release(Object obj) {
+      deque.offerFirst((MyPoolable) obj);
+    }
+  }
+  
+  private static class NoPoolFacade extends BasePoolFacade {
+    private final Allocation allocation;
+
+    public NoPoolFacade(Allocation allocation) {
+      this.allocation = allocation;
+    }
+
+    @Override
+    public Object claim() throws Exception {
+      return allocation.allocateUnpooled();
+    }
+
+    @Override
+    public void release(Object obj) {
+    }
+  }
+  
+  private static class CommonsPoolFacade extends BasePoolFacade {
     private final BaseObjectPool<MyPoolable> objectPool;
 
     public CommonsPoolFacade(BaseObjectPool<MyPoolable> objectPool) {
@@ -0,0 +1,115 @@
+package stormpot.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Live counters for a pool, updated by the {@link InstrumentedPoolFacade}
+ * and the {@link Allocation} of the pool, and published over JMX under
+ * "stormpot.benchmark:type=PoolMetrics".
+ */
+public class PoolMetrics implements PoolMetricsMBean {
+  private static final AtomicInteger SEQUENCE = new AtomicInteger();
+  // Waits of 2^40 ns, or about 18 minutes, and more, share the last bucket.
+  private static final int BUCKETS = 41;
+
+  private final StripedCounter claims = new StripedCounter();
+  private final StripedCounter releases = new StripedCounter();
+  private final StripedCounter allocations = new StripedCounter();
+  private final StripedCounter deallocations = new StripedCounter();
+  private final StripedCounter claimWaitNanos = new StripedCounter();
+  private final StripedCounter heldReleases = new StripedCounter();
+  private final StripedCounter holdNanos = new StripedCounter();
+  private final StripedCounter[] claimWaitHistogram = new StripedCounter[BUCKETS];
+  private final ObjectName name;
+
+  public PoolMetrics(String poolName) throws Exception {
+    for (int i = 0; i < BUCKETS; i++) {
+      claimWaitHistogram[i] = new StripedCounter();
+    }
+    name = new ObjectName("stormpot.benchmark:type=PoolMetrics,name="
+        + poolName + "-" + SEQUENCE.incrementAndGet());
+  }
+
+  public void register() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    server.registerMBean(this, name);
+  }
+
+  public void unregister() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    if (server.isRegistered(name)) {
+      server.unregisterMBean(name);
+    }
+  }
+
+  public void recordClaim(long waitNanos) {
+    claims.increment();
+    claimWaitNanos.add(waitNanos);
+    int bucket = 64 - Long.numberOfLeadingZeros(waitNanos);
+    claimWaitHistogram[Math.min(bucket, BUCKETS - 1)].increment();
+  }
+
+  public void recordRelease(long heldNanos) {
+    releases.increment();
+    heldReleases.increment();
+    holdNanos.add(heldNanos);
+  }
+
+  /**
+   * Count a release of an object whose claim time is unknown.
+   */
+  public void recordRelease() {
+    releases.increment();
+  }
+
+  public void recordAllocation() {
+    allocations.increment();
+  }
+
+  public void recordDeallocation() {
+    deallocations.increment();
+  }
+
+  @Override
+  public long getClaims() {
+    return claims.sum();
+  }
+
+  @Override
+  public long getReleases() {
+    return releases.sum();
+  }
+
+  @Override
+  public long getAllocations() {
+    return allocations.sum();
+  }
+
+  @Override
+  public long getDeallocations() {
+    return deallocations.sum();
+  }
+
+  @Override
+  public double getMeanClaimWaitNanos() {
+    return claimWaitNanos.sum() / (double) Math.max(1, claims.sum());
+  }
+
+  @Override
+  public double getMeanHoldNanos() {
+    return holdNanos.sum() / (double) Math.max(1, heldReleases.sum());
+  }
+
+  @Override
+  public long[] getClaimWaitHistogram() {
+    long[] histogram = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      histogram[i] = claimWaitHistogram[i].sum();
+    }
+    return histogram;
+  }
+}
@@ -0,0 +1,24 @@
+package stormpot.benchmark;
+
+/**
+ * The JMX view of the {@link PoolMetrics}.
+ */
+public interface PoolMetricsMBean {
+  long getClaims();
+
+  long getReleases();
+
+  long getAllocations();
+
+  long getDeallocations();
+
+  double getMeanClaimWaitNanos();
+
+  double getMeanHoldNanos();
+
+  /**
+   * Claim waits counted by powers of two: index 0 counts the waits of 0 ns,
+   * and index n counts the waits from 2^(n-1) up to 2^n ns.
+   */
+  long[] getClaimWaitHistogram();
+}
@@ -0,0 +1,140 @@
+package stormpot.benchmark;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+
+import uk.co.real_logic.queues.OneToOneConcurrentArrayQueue;
+import uk.co.real_logic.queues.OneToOneConcurrentArrayQueue2;
+import uk.co.real_logic.queues.OneToOneConcurrentArrayQueue3;
+
+/**
+ * The {@link uk.co.real_logic.queues.QueuePerfTest} workload, one producer
+ * and one consumer passing values through a queue, with a
+ * {@link WaitStrategy} for when the queue is full or empty.
+ * <p>
+ * Besides the throughput, it reports the hand-off latency of every message,
+ * from just before the producer offers it to just after the consumer polls
+ * it, and the CPU time that both threads burnt while doing it.
+ * <p>
+ * Usage: <code>QueueHandOffBenchmark &lt;queue&gt; [&lt;wait strategy&gt;]</code>,
+ * where the queue is numbered as in QueuePerfTest, and the wait strategy
+ * defaults to yield.
+ */
+public class QueueHandOffBenchmark {
+  private static final int QUEUE_CAPACITY = 32 * 1024;
+  private static final int REPETITIONS = 50 * 1000 * 1000;
+  private static final Integer TEST_VALUE = Integer.valueOf(777);
+  // The bounded queues keep the producer at most a queue full ahead of the
+  // consumer, but the ConcurrentLinkedQueue does not, so the producer also
+  // waits for the consumer before it overwrites an offer time that has not
+  // been read yet.
+  private static final int OFFER_TIMES = 2 * QUEUE_CAPACITY;
+  private static final int OFFER_TIMES_MASK = OFFER_TIMES - 1;
+
+  public static void main(String[] args) throws Exception {
+    Queue<Integer> queue = createQueue(args[0]);
+    WaitStrategy waitStrategy = args.length > 1
+        ? WaitStrategy.valueOf(args[1]) : WaitStrategy.yield;
+
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      performanceRun(i, queue, waitStrategy);
+    }
+  }
+
+  private static Queue<Integer> createQueue(String option) {
+    switch (Integer.parseInt(option)) {
+    case 1: return new OneToOneConcurrentArrayQueue<Integer>(QUEUE_CAPACITY);
+    case 2: return new OneToOneConcurrentArrayQueue2<Integer>(QUEUE_CAPACITY);
+    case 3: return new OneToOneConcurrentArrayQueue3<Integer>(QUEUE_CAPACITY);
+    case 4: return new ArrayBlockingQueue<Integer>(QUEUE_CAPACITY);
+    case 5: return new LinkedBlockingQueue<Integer>(QUEUE_CAPACITY);
+    case 6: return new ConcurrentLinkedQueue<Integer>();
+    default: throw new IllegalArgumentException("Invalid option: " + option);
+    }
+  }
+
+  private static void performanceRun(
+      int runNumber, Queue<Integer> queue, WaitStrategy waitStrategy)
+      throws Exception {
+    long[] offerTimes = new long[OFFER_TIMES];
+    AtomicLong consumed = new AtomicLong();
+    Histogram histogram = LatencyHistograms.create();
+    long start = System.nanoTime();
+    long cpuBefore = CpuTimeMeter.threadCpuNanos();
+    Producer producer = new Producer(queue, waitStrategy, offerTimes, consumed);
+    Thread thread = new Thread(producer);
+    thread.start();
+
+    // The queues are FIFO, so the n-th value polled is the n-th offered,
+    // and the offer time was written before the value was offered.
+    for (int i = 0; i < REPETITIONS; i++) {
+      int attempt = 0;
+      while (null == queue.poll()) {
+        waitStrategy.idle(attempt++);
+      }
+      histogram.recordValue(System.nanoTime() - offerTimes[i & OFFER_TIMES_MASK]);
+      consumed.lazySet(i + 1);
+    }
+    long consumerCpuNanos = CpuTimeMeter.threadCpuNanos() - cpuBefore;
+
+    thread.join();
+
+    long duration = System.nanoTime() - start;
+    long ops = (REPETITIONS * 1000L * 1000L * 1000L) / duration;
+    System.out.printf(
+        "%d - ops/sec=%,d - %s %s hand-off p50 %s ns, p99 %s ns, p99.9 %s ns, " +
+        "max %s ns, cpu ms producer=%,d consumer=%,d\n",
+        runNumber, ops, queue.getClass().getSimpleName(), waitStrategy,
+        histogram.getValueAtPercentile(50.0),
+        histogram.getValueAtPercentile(99.0),
+        histogram.getValueAtPercentile(99.9),
+        histogram.getMaxValue(),
+        producer.cpuNanos / 1000000, consumerCpuNanos / 1000000);
+  }
+
+  private static class Producer implements Runnable {
+    private final Queue<Integer> queue;
+    private final WaitStrategy waitStrategy;
+    private final long[] offerTimes;
+    private final AtomicLong consumed;
+    private long cpuNanos;
+
+    public Producer(
+        Queue<Integer> queue, WaitStrategy waitStrategy, long[] offerTimes,
+        AtomicLong consumed) {
+      this.queue = queue;
+      this.waitStrategy = waitStrategy;
+      this.offerTimes = offerTimes;
+      this.consumed = consumed;
+    }
+
+    @Override
+    public void run() {
+      long cpuBefore = CpuTimeMeter.threadCpuNanos();
+      // Only read the consumer's progress when the producer might be a
+      // whole ring of offer times ahead of where it was last seen.
+      long lastConsumed = 0;
+      for (int i = 0; i < REPETITIONS; i++) {
+        int attempt = 0;
+        while (i - lastConsumed >= OFFER_TIMES) {
+          lastConsumed = consumed.get();
+          if (i - lastConsumed >= OFFER_TIMES) {
+            waitStrategy.idle(attempt++);
+          }
+        }
+        offerTimes[i & OFFER_TIMES_MASK] = System.nanoTime();
+        attempt = 0;
+        while (!queue.offer(TEST_VALUE)) {
+          waitStrategy.idle(attempt++);
+        }
+      }
+      cpuNanos = CpuTimeMeter.threadCpuNanos() - cpuBefore;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package stormpot.benchmark;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.benchkit.Recorder;
+
+/**
+ * Reads the measurements out of a {@link Recorder}, as the values of its
+ * public no-argument getters that return numbers or arrays of numbers.
+ * Going by the getters, rather than a fixed list of them, keeps the results
+ * files working across versions of benchkit.
+ */
+public final class RecorderData {
+  private RecorderData() {
+  }
+
+  /**
+   * The measurements of the recorder, or none if there is no recorder, as
+   * for the parts of a configuration reported by a
+   * {@link BreakdownReporter}.
+   */
+  public static Map<String, Object> of(Recorder recorder) {
+    Map<String, Object> data = new TreeMap<String, Object>();
+    if (recorder == null) {
+      return data;
+    }
+    for (Method method : recorder.getClass().getMethods()) {
+      String property = propertyName(method);
+      if (property == null || !isNumeric(method.getReturnType())) {
+        continue;
+      }
+      try {
+        data.put(property, method.invoke(recorder));
+      } catch (Exception e) {
+        // Not a plain getter after all; leave it out.
+      }
+    }
+    return data;
+  }
+
+  private static String propertyName(Method method) {
+    String name = method.getName();
+    if (!name.startsWith("get") || name.length() == 3
+        || method.getParameterTypes().length != 0
+        || Modifier.isStatic(method.getModifiers())
+        || method.getDeclaringClass() == Object.class) {
+      return null;
+    }
+    return Character.toLowerCase(name.charAt(3)) + name.substring(4);
+  }
+
+  private static boolean isNumeric(Class<?> type) {
+    if (type.isArray()) {
+      return isNumeric(type.getComponentType());
+    }
+    return (type.isPrimitive() && type != boolean.class && type != void.class
+        && type != char.class) || Number.class.isAssignableFrom(type);
+  }
+}
@@ -0,0 +1,105 @@
+package stormpot.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.benchkit.Benchmark;
+import org.benchkit.BenchmarkRunner;
+import org.benchkit.PrintingReporter;
+import org.benchkit.WarmupPrintingReporter;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+import org.benchkit.htmlchartsreporter.HtmlChartsReporter;
+import org.benchkit.htmlchartsreporter.LatencyHistogramChart;
+import org.benchkit.htmlchartsreporter.ThroughputChart;
+
+/**
+ * The main of the benchmarks that chart throughput and latency against one
+ * of their parameters: a warmup, the real run, and the HTML report with the
+ * latency percentiles, next to the CSV/JSON files and the results store.
+ * <p>
+ * The report files are named after the given base name, like
+ * &lt;baseName&gt;.html. Benchmarks that measure more than throughput and
+ * latency can add bar charts of their own to the report.
+ */
+public final class ReportingRunner {
+  private static final int ITERATIONS = 5;
+
+  private ReportingRunner() {
+  }
+
+  /**
+   * Run all parameter combinations of the benchmark in this JVM, after
+   * running them all the given number of iterations as a warmup.
+   */
+  public static void run(
+      Class<? extends Benchmark> benchmarkType, DataInterpretor interpretor,
+      String titleFormat, String xAxisLabel, int warmupIterations,
+      String baseName, BarChartReporter... barCharts) throws Exception {
+    Reports reports = new Reports(interpretor, titleFormat, xAxisLabel, barCharts);
+
+    // Pre-heat the lot:
+    System.out.println("## Warmup");
+    BenchmarkRunner.run(
+        benchmarkType,
+        new WarmupPrintingReporter(), warmupIterations, 0);
+
+    // The real run:
+    System.out.println("## Benchmark");
+    LatencyHistograms.clear();
+    GcMeter.clear();
+    BenchmarkRunner.run(
+        benchmarkType,
+        new PrintingReporter(),
+        reports.reporter(),
+        ITERATIONS, 0);
+
+    reports.write(baseName);
+  }
+
+  /**
+   * Run every parameter combination of the benchmark in its own JVM, with
+   * the {@link ForkedBenchmarkRunner}.
+   */
+  public static void runForked(
+      Class<? extends Benchmark> benchmarkType, DataInterpretor interpretor,
+      String titleFormat, String xAxisLabel, String baseName) throws Exception {
+    Reports reports = new Reports(interpretor, titleFormat, xAxisLabel);
+    ForkedBenchmarkRunner.run(benchmarkType, reports.reporter());
+    reports.write(baseName);
+  }
+
+  private static final class Reports {
+    private final HtmlChartsReporter chartReporter;
+    private final ResultsStore resultsStore = new ResultsStore();
+    private final CsvJsonReporter dataReporter = new CsvJsonReporter();
+    private final PercentileReporter percentileReporter;
+    private final BarChartReporter[] barCharts;
+
+    Reports(DataInterpretor interpretor, String titleFormat, String xAxisLabel,
+        BarChartReporter... barCharts) {
+      chartReporter = new HtmlChartsReporter(interpretor, titleFormat);
+      chartReporter.addChartRender(new ThroughputChart("Throughput", xAxisLabel, "Ops/Sec"));
+      chartReporter.addChartRender(new LatencyHistogramChart("Latency Histograms", xAxisLabel));
+      percentileReporter = new PercentileReporter(interpretor, titleFormat);
+      this.barCharts = barCharts;
+    }
+
+    TeeReporter reporter() {
+      TeeReporter charts = new TeeReporter(barCharts);
+      return new TeeReporter(
+          chartReporter, resultsStore, dataReporter, percentileReporter, charts);
+    }
+
+    void write(String baseName) throws Exception {
+      String report = percentileReporter.addTo(chartReporter.generateReport());
+      for (BarChartReporter barChart : barCharts) {
+        report = barChart.addTo(report);
+      }
+      File file = new File(baseName + ".html");
+      if (!file.exists()) file.createNewFile();
+      Files.write(file.toPath(), report.getBytes("UTF-8"));
+      dataReporter.writeFiles(baseName);
+      percentileReporter.writeFiles(baseName);
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package stormpot.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.benchkit.Benchmark;
+import org.benchkit.BenchmarkRunner;
+import org.benchkit.Param;
+import org.benchkit.PrintingReporter;
+import org.benchkit.Recorder;
+import org.benchkit.WarmupPrintingReporter;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+import org.benchkit.htmlchartsreporter.HtmlChartsReporter;
+import org.benchkit.htmlchartsreporter.LatencyHistogramChart;
+import org.benchkit.htmlchartsreporter.ThroughputChart;
+
+/**
+ * Workers claim and release objects like in the
+ * {@link MultiThreadedBenchmark}, while the target size of the pool is
+ * changed on a fixed schedule. Pools that cannot be resized are replaced
+ * with a new pool of the new size instead, as the baseline.
+ * <p>
+ * Each session prints the throughput and claim latency over time, in a
+ * window around every resize.
+ */
+public class ResizeBenchmark implements Benchmark {
+  // Ends with the size it starts with, so every session starts out the same.
+  private static final int[] SIZES = {10, 20, 5, 10};
+  private static final long BUCKET_NANOS = TimeUnit.MILLISECONDS.toNanos(25);
+  private static final long WINDOW_BEFORE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+  private static final long WINDOW_AFTER_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+  private final Object[] args;
+  private final PoolFactory factory;
+  private final int threads;
+  private final long resizeIntervalMillis;
+  private ExecutorService executor;
+  private List<PoolFacade> pools;
+  private volatile PoolFacade pool;
+
+  public ResizeBenchmark(
+      @Param(value = "pools", defaults = "stack,generic,queue,blaze,tlcache,furious,ring,clq,deque") PoolFactory factory,
+      @Param(value = "threads", defaults = "8") int threads,
+      @Param(value = "resizeIntervalMillis", defaults = "500") long resizeIntervalMillis) {
+    this.args = new Object[] {factory, threads, resizeIntervalMillis};
+    this.factory = factory;
+    this.threads = threads;
+    this.resizeIntervalMillis = resizeIntervalMillis;
+  }
+
+  @Override
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(threads);
+    pools = new ArrayList<PoolFacade>();
+    pool = factory.create(SIZES[0], 1000);
+    pools.add(pool);
+  }
+
+  @Override
+  public void runSession(Recorder recorder) throws Exception {
+    long intervalNanos = TimeUnit.MILLISECONDS.toNanos(resizeIntervalMillis);
+    long durationNanos = intervalNanos * SIZES.length;
+    CountDownLatch startLatch = new CountDownLatch(1);
+    CountDownLatch endLatch = new CountDownLatch(threads);
+    List<Recorder> subRecorders = new ArrayList<Recorder>();
+    List<Worker> workers = new ArrayList<Worker>();
+    List<Histogram> histograms = new ArrayList<Histogram>();
+
+    long sessionStart = System.nanoTime();
+    for (int i = 0; i < threads; i++) {
+      Recorder subRecorder = recorder.createBlankCopy();
+      subRecorders.add(subRecorder);
+      Worker worker = new Worker(
+          sessionStart, durationNanos, startLatch, endLatch, subRecorder);
+      workers.add(worker);
+      histograms.add(worker.histogram);
+      executor.execute(worker);
+    }
+
+    startLatch.countDown();
+    long[] resizeTimes = new long[SIZES.length];
+    for (int i = 1; i < SIZES.length; i++) {
+      long resizeTime = sessionStart + intervalNanos * i;
+      TimeUnit.NANOSECONDS.sleep(resizeTime - System.nanoTime());
+      resizeTimes[i] = System.nanoTime();
+      resize(SIZES[i]);
+    }
+    endLatch.await();
+
+    for (Recorder subRecorder : subRecorders) {
+      recorder.add(subRecorder);
+    }
+    LatencyHistograms.add(histograms, args);
+    printResizeWindows(workers, resizeTimes);
+  }
+
+  private void resize(int size) {
+    if (!factory.setTargetSize(pool, size)) {
+      PoolFacade rebuilt = factory.create(size, 1000);
+      pools.add(rebuilt);
+      pool = rebuilt;
+    }
+  }
+
+  private void printResizeWindows(List<Worker> workers, long[] resizeTimes) {
+    TimeSeries series = workers.get(0).series;
+    for (int i = 1; i < workers.size(); i++) {
+      series.add(workers.get(i).series);
+    }
+    for (int i = 1; i < resizeTimes.length; i++) {
+      System.out.printf("%s threads=%s resize %s -> %s:\n",
+          factory, threads, SIZES[i - 1], SIZES[i]);
+      int from = series.bucketOf(resizeTimes[i] - WINDOW_BEFORE_NANOS);
+      int to = series.bucketOf(resizeTimes[i] + WINDOW_AFTER_NANOS);
+      int resizeBucket = series.bucketOf(resizeTimes[i]);
+      for (int bucket = from; bucket <= to; bucket++) {
+        long offsetMillis = TimeUnit.NANOSECONDS.toMillis(
+            (bucket - resizeBucket) * series.getBucketNanos());
+        System.out.printf("  %+5d ms: %,12.0f ops/sec, mean %,10.1f us, max %,10.1f us\n",
+            offsetMillis, series.getOpsPerSecond(bucket),
+            series.getMeanLatencyNanos(bucket) / 1000.0,
+            series.getMaxLatencyNanos(bucket) / 1000.0);
+      }
+    }
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    for (PoolFacade facade : pools) {
+      factory.shutdown(facade);
+    }
+    executor.shutdown();
+  }
+
+  public class Worker implements Runnable {
+    private final long sessionStart;
+    private final long durationNanos;
+    private final CountDownLatch startLatch;
+    private final CountDownLatch endLatch;
+    private final Recorder recorder;
+    private final TimeSeries series;
+    private final Histogram histogram;
+
+    public Worker(long sessionStart, long durationNanos,
+        CountDownLatch startLatch, CountDownLatch endLatch, Recorder recorder) {
+      this.sessionStart = sessionStart;
+      this.durationNanos = durationNanos;
+      this.startLatch = startLatch;
+      this.endLatch = endLatch;
+      this.recorder = recorder;
+      this.series = new TimeSeries(sessionStart, durationNanos, BUCKET_NANOS);
+      this.histogram = LatencyHistograms.create();
+    }
+
+    @Override
+    public void run() {
+      try {
+        startLatch.await();
+        long deadline = sessionStart + durationNanos;
+        long start = recorder.begin();
+        while (start - deadline < 0) {
+          // Objects go back to the pool they came from, even if it has
+          // been replaced in the mean time.
+          PoolFacade current = pool;
+          current.release(current.claim());
+          long end = recorder.record(start);
+          series.record(end, end - start);
+          histogram.recordValue(end - start);
+          start = end;
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+      endLatch.countDown();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String titleFormat = "Resize Benchmark [resizeIntervalMillis=%3$s]";
+    HtmlChartsReporter chartReporter = new HtmlChartsReporter(
+        new Interpretor(), titleFormat);
+    chartReporter.addChartRender(new ThroughputChart("Throughput", "Threads", "Ops/Sec"));
+    chartReporter.addChartRender(new LatencyHistogramChart("Latency Histograms", "Threads"));
+    PrintingReporter printingReporter = new PrintingReporter();
+    WarmupPrintingReporter warmupReporter = new WarmupPrintingReporter();
+    ResultsStore resultsStore = new ResultsStore();
+    CsvJsonReporter dataReporter = new CsvJsonReporter();
+    PercentileReporter percentileReporter = new PercentileReporter(
+        new Interpretor(), titleFormat);
+
+    // Pre-heat the lot:
+    System.out.println("## Warmup");
+    BenchmarkRunner.run(
+        ResizeBenchmark.class,
+        warmupReporter, 1, 0);
+
+    // The real run:
+    System.out.println("## Benchmark");
+    LatencyHistograms.clear();
+    BenchmarkRunner.run(
+        ResizeBenchmark.class,
+        printingReporter,
+        new TeeReporter(chartReporter, resultsStore, dataReporter, percentileReporter),
+        5, 0);
+
+    String report = percentileReporter.addTo(chartReporter.generateReport());
+    File file = new File("resize-results.html");
+    if (!file.exists()) file.createNewFile();
+    Files.write(file.toPath(), report.getBytes("UTF-8"));
+    dataReporter.writeFiles("resize-results");
+    percentileReporter.writeFiles("resize-results");
+  }
+
+  private static final class Interpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Resize Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[1];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return String.valueOf(args[0]);
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package stormpot.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.benchkit.Recorder;
+import org.benchkit.Reporter;
+
+/**
+ * Appends every report as a line of JSON to a file in the results
+ * directory, so runs can be compared later with {@link CompareResults}.
+ * <p>
+ * Every JVM is one run, named by the time it started, and writes one file:
+ * <code>results/&lt;run&gt;.jsonl</code>. The directory can be changed with
+ * the "results.dir" system property. Every line holds the benchmark name,
+ * its arguments, the JVM, host, git revision, the measurements read by
+ * {@link RecorderData}, the latency percentiles from
+ * {@link LatencyHistograms}, and the garbage collections from
+ * {@link GcMeter}.
+ */
+public class ResultsStore implements Reporter {
+  public static final String RUN =
+      new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+
+  private final File file;
+  private final Map<String, Object> environment;
+
+  public ResultsStore() {
+    this(directory());
+  }
+
+  public ResultsStore(File directory) {
+    file = new File(directory, RUN + ".jsonl");
+    environment = environment();
+  }
+
+  public static File directory() {
+    return new File(System.getProperty("results.dir", "results"));
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  @Override
+  public void report(String name, Object[] args, Recorder recorder) {
+    Map<String, Object> line = new LinkedHashMap<String, Object>();
+    line.put("run", RUN);
+    line.put("timestamp", System.currentTimeMillis());
+    line.put("benchmark", name);
+    List<String> argStrings = new ArrayList<String>();
+    for (Object arg : args) {
+      argStrings.add(String.valueOf(arg));
+    }
+    line.put("args", argStrings);
+    line.putAll(environment);
+    line.put("recorder", RecorderData.of(recorder));
+    line.put("latency", LatencyHistograms.summary(args));
+    line.put("gc", GcMeter.summary(args));
+    try {
+      append(Json.write(line));
+    } catch (IOException e) {
+      System.err.println("Could not write results to " + file + ": " + e);
+    }
+  }
+
+  private synchronized void append(String line) throws IOException {
+    file.getParentFile().mkdirs();
+    try (Writer writer = new OutputStreamWriter(
+        new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+      writer.write(line);
+      writer.write('\n');
+    }
+  }
+
+  /**
+   * Read all the lines of the given run.
+   */
+  @SuppressWarnings("unchecked")
+  public static List<Map<String, Object>> load(File directory, String run)
+      throws IOException {
+    File runFile = new File(directory, run + ".jsonl");
+    List<Map<String, Object>> lines = new ArrayList<Map<String, Object>>();
+    for (String line : Files.readAllLines(runFile.toPath(), StandardCharsets.UTF_8)) {
+      if (!line.trim().isEmpty()) {
+        lines.add((Map<String, Object>) Json.parse(line));
+      }
+    }
+    return lines;
+  }
+
+  private static Map<String, Object> environment() {
+    Map<String, Object> env = new LinkedHashMap<String, Object>();
+    env.put("jvm", System.getProperty("java.vm.name") + " "
+        + System.getProperty("java.vm.version"));
+    env.put("javaVersion", System.getProperty("java.version"));
+    env.put("jvmArgs", String.valueOf(
+        ManagementFactory.getRuntimeMXBean().getInputArguments()));
+    env.put("os", System.getProperty("os.name") + " "
+        + System.getProperty("os.version") + " " + System.getProperty("os.arch"));
+    env.put("cpus", Runtime.getRuntime().availableProcessors());
+    env.put("host", hostName());
+    env.put("gitRevision", gitRevision());
+    return env;
+  }
+
+  private static String hostName() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (IOException e) {
+      return "unknown";
+    }
+  }
+
+  private static String gitRevision() {
+    String revision = System.getProperty("git.revision");
+    if (revision != null) {
+      return revision;
+    }
+    try {
+      Process process = new ProcessBuilder("git", "rev-parse", "HEAD")
+          .redirectErrorStream(true).start();
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+          process.getInputStream(), StandardCharsets.UTF_8))) {
+        String line = reader.readLine();
+        if (waitFor(process) == 0 && line != null) {
+          return line.trim();
+        }
+      }
+    } catch (Exception e) {
+      // Not a git checkout, or no git.
+    }
+    return "unknown";
+  }
+
+  private static int waitFor(Process process) throws InterruptedException {
+    // Process.waitFor(timeout) is Java 8, so poll for the exit value.
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (System.nanoTime() - deadline < 0) {
+      try {
+        return process.exitValue();
+      } catch (IllegalThreadStateException e) {
+        Thread.sleep(10);
+      }
+    }
+    process.destroy();
+    return -1;
+  }
+}
@@ -1,32 +1,100 @@
 package stormpot.benchmark;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.HdrHistogram.Histogram;
 import org.benchkit.Benchmark;
 import org.benchkit.BenchmarkRunner;
 import org.benchkit.Param;
+import org.benchkit.PrintingReporter;
 import org.benchkit.Recorder;
+import org.benchkit.WarmupPrintingReporter;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+import org.benchkit.htmlchartsreporter.HtmlChartsReporter;
+import org.benchkit.htmlchartsreporter.LatencyHistogramChart;
 
+/**
+ * The uncontended cost of the pools, with claim and release timed apart.
+ * Every round claims all the objects in the pool and then releases them
+ * again, and only the operation under test is recorded. The throughput is
+ * charted by the {@link TimedThroughputReporter}, because the Recorder
+ * would count the untimed half of the rounds too.
+ */
 public class SingleThreadedBenchmark implements Benchmark {
+  private static final int ITERATIONS = 1000 * 1000;
+
+  public enum Operation {
+    claim, release, roundtrip
+  }
+
+  private final Object[] args;
   private final PoolFactory factory;
+  private final Operation operation;
+  private final int poolSize;
   private PoolFacade pool;
+  private Object[] objs;
 
   public SingleThreadedBenchmark(
-      @Param(value = "pools", defaults = "blaze") PoolFactory factory) {
+      @Param(value = "pools", defaults = "stack,generic,queue,blaze,tlcache,striped,furious,ring,clq,deque,nopool") PoolFactory factory,
+      @Param(value = "operation", defaults = "claim,release,roundtrip") Operation operation,
+      @Param(value = "poolSize", defaults = "10") int poolSize) {
+    this.args = new Object[] {factory, operation, poolSize};
     this.factory = factory;
+    this.operation = operation;
+    this.poolSize = poolSize;
   }
   
   @Override
   public void setUp() {
-    pool = factory.create(10, 10000);
+    pool = factory.create(poolSize, 10000);
+    objs = new Object[poolSize];
   }
   
   @Override
   public void runSession(Recorder recorder) throws Exception {
-    long start = recorder.begin();
-    for (int i = 0; i < 1000 * 1000; i++) {
-      Object obj = pool.claim();
-      pool.release(obj);
-      start = recorder.record(start);
+    int rounds = ITERATIONS / poolSize;
+    long timedNanos = 0;
+    Histogram histogram = LatencyHistograms.create();
+    long allocatedBefore = AllocationMeter.threadAllocatedBytes();
+    recorder.begin();
+    for (int round = 0; round < rounds; round++) {
+      if (operation == Operation.roundtrip) {
+        for (int i = 0; i < poolSize; i++) {
+          long start = System.nanoTime();
+          pool.release(pool.claim());
+          timedNanos += record(recorder, histogram, start);
+        }
+        continue;
+      }
+      for (int i = 0; i < poolSize; i++) {
+        long start = System.nanoTime();
+        objs[i] = pool.claim();
+        if (operation == Operation.claim) {
+          timedNanos += record(recorder, histogram, start);
+        }
+      }
+      for (int i = 0; i < poolSize; i++) {
+        long start = System.nanoTime();
+        pool.release(objs[i]);
+        if (operation == Operation.release) {
+          timedNanos += record(recorder, histogram, start);
+        }
+      }
     }
+    long allocatedBytes = AllocationMeter.threadAllocatedBytes() - allocatedBefore;
+    LatencyHistograms.add(Collections.singletonList(histogram), args);
+    long ops = (long) rounds * poolSize;
+    System.out.printf("%s %s: %.1f ns/op\n",
+        factory, operation, timedNanos / (double) ops);
+    AllocationMeter.print(factory + " " + operation, allocatedBytes, ops);
+  }
+
+  private static long record(Recorder recorder, Histogram histogram, long start) {
+    long latency = recorder.record(start) - start;
+    histogram.recordValue(latency);
+    return latency;
   }
   
   @Override
@@ -35,6 +103,57 @@ public class SingleThreadedBenchmark implements Benchmark {
   }
   
   public static void main(String[] args) throws Exception {
-    BenchmarkRunner.run(SingleThreadedBenchmark.class);
+    String titleFormat = "Single-Threaded Benchmark [poolSize=%3$s]";
+    HtmlChartsReporter chartReporter = new HtmlChartsReporter(
+        new Interpretor(), titleFormat);
+    chartReporter.addChartRender(new LatencyHistogramChart("Latency Histograms", "Operation"));
+    PrintingReporter printingReporter = new PrintingReporter();
+    WarmupPrintingReporter warmupReporter = new WarmupPrintingReporter();
+    ResultsStore resultsStore = new ResultsStore();
+    CsvJsonReporter dataReporter = new CsvJsonReporter();
+    PercentileReporter percentileReporter = new PercentileReporter(
+        new Interpretor(), titleFormat);
+    TimedThroughputReporter throughputReporter = new TimedThroughputReporter(
+        new Interpretor(), titleFormat);
+
+    // Pre-heat the lot:
+    System.out.println("## Warmup");
+    BenchmarkRunner.run(
+        SingleThreadedBenchmark.class,
+        warmupReporter, 4, 0);
+
+    // The real run:
+    System.out.println("## Benchmark");
+    LatencyHistograms.clear();
+    BenchmarkRunner.run(
+        SingleThreadedBenchmark.class,
+        printingReporter,
+        new TeeReporter(chartReporter, resultsStore, dataReporter,
+            percentileReporter, throughputReporter),
+        5, 0);
+
+    String report = percentileReporter.addTo(
+        throughputReporter.addTo(chartReporter.generateReport()));
+    File file = new File("single-threaded-results.html");
+    if (!file.exists()) file.createNewFile();
+    Files.write(file.toPath(), report.getBytes("UTF-8"));
+    dataReporter.writeFiles("single-threaded-results");
+    percentileReporter.writeFiles("single-threaded-results");
+  }
+
+  private static final class Interpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Single-Threaded Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[1];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return String.valueOf(args[0]);
+    }
   }
 }
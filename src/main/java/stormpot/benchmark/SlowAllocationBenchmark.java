@@ -0,0 +1,242 @@
+package stormpot.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.benchkit.Benchmark;
+import org.benchkit.BenchmarkRunner;
+import org.benchkit.Param;
+import org.benchkit.PrintingReporter;
+import org.benchkit.Recorder;
+import org.benchkit.WarmupPrintingReporter;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+import org.benchkit.htmlchartsreporter.HtmlChartsReporter;
+import org.benchkit.htmlchartsreporter.LatencyHistogramChart;
+import org.benchkit.htmlchartsreporter.ThroughputChart;
+
+/**
+ * Workers start claiming from a freshly created pool, whose allocations are
+ * slow and sometimes fail, so the claims have to wait while the pool fills
+ * up. The pool is created anew for every session.
+ * <p>
+ * Each session prints how long the claims waited, how many failed, and the
+ * throughput over time, to show how quickly each pool recovers.
+ */
+public class SlowAllocationBenchmark implements Benchmark {
+  private static final long DURATION_NANOS = TimeUnit.SECONDS.toNanos(2);
+  private static final long BUCKET_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final Object[] args;
+  private final PoolFactory factory;
+  private final long allocationLatencyMillis;
+  private final LatencyDistribution distribution;
+  private final double failureRate;
+  private final int threads;
+  private ExecutorService executor;
+
+  public SlowAllocationBenchmark(
+      @Param(value = "pools", defaults = "stack,generic,queue,blaze,tlcache,furious,ring,clq,deque") PoolFactory factory,
+      @Param(value = "allocationLatencyMillis", defaults = "1,10,50") long allocationLatencyMillis,
+      @Param(value = "distribution", defaults = "exponential") LatencyDistribution distribution,
+      @Param(value = "failureRate", defaults = "0,0.05") double failureRate,
+      @Param(value = "threads", defaults = "8") int threads) {
+    this.args = new Object[] {factory, allocationLatencyMillis, distribution, failureRate, threads};
+    this.factory = factory;
+    this.allocationLatencyMillis = allocationLatencyMillis;
+    this.distribution = distribution;
+    this.failureRate = failureRate;
+    this.threads = threads;
+  }
+
+  @Override
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(threads);
+  }
+
+  @Override
+  public void runSession(Recorder recorder) throws Exception {
+    Allocation allocation = new Allocation()
+        .setLatency(allocationLatencyMillis, TimeUnit.MILLISECONDS, distribution)
+        .setFailureRate(failureRate);
+    PoolFacade pool = factory.create(10, 1000, allocation);
+    CountDownLatch startLatch = new CountDownLatch(1);
+    CountDownLatch endLatch = new CountDownLatch(threads);
+    List<Recorder> subRecorders = new ArrayList<Recorder>();
+    List<Worker> workers = new ArrayList<Worker>();
+    List<Histogram> histograms = new ArrayList<Histogram>();
+
+    long sessionStart = System.nanoTime();
+    for (int i = 0; i < threads; i++) {
+      Recorder subRecorder = recorder.createBlankCopy();
+      subRecorders.add(subRecorder);
+      Worker worker = new Worker(
+          pool, sessionStart, startLatch, endLatch, subRecorder);
+      workers.add(worker);
+      histograms.add(worker.histogram);
+      executor.execute(worker);
+    }
+
+    startLatch.countDown();
+    endLatch.await();
+    factory.shutdown(pool);
+
+    for (Recorder subRecorder : subRecorders) {
+      recorder.add(subRecorder);
+    }
+    LatencyHistograms.add(histograms, args);
+    printRecovery(workers);
+  }
+
+  private void printRecovery(List<Worker> workers) {
+    long claims = 0;
+    long failures = 0;
+    long claimWaitNanos = 0;
+    long maxClaimWaitNanos = 0;
+    TimeSeries series = null;
+    for (Worker worker : workers) {
+      claims += worker.claims;
+      failures += worker.failures;
+      claimWaitNanos += worker.claimWaitNanos;
+      maxClaimWaitNanos = Math.max(maxClaimWaitNanos, worker.maxClaimWaitNanos);
+      if (series == null) {
+        series = worker.series;
+      } else {
+        series.add(worker.series);
+      }
+    }
+    System.out.printf(
+        "%s latency=%sms %s failureRate=%s: %s claims, %s failed, " +
+        "mean claim wait %.1f us, max %.1f us\n",
+        factory, allocationLatencyMillis, distribution, failureRate,
+        claims, failures, claimWaitNanos / 1000.0 / Math.max(1, claims),
+        maxClaimWaitNanos / 1000.0);
+    StringBuilder sb = new StringBuilder("  ops/sec per 100 ms:");
+    for (int i = 0; i < series.size(); i++) {
+      sb.append(' ').append((long) series.getOpsPerSecond(i));
+    }
+    System.out.println(sb);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    executor.shutdown();
+  }
+
+  public static class Worker implements Runnable {
+    private final PoolFacade pool;
+    private final long sessionStart;
+    private final CountDownLatch startLatch;
+    private final CountDownLatch endLatch;
+    private final Recorder recorder;
+    private final TimeSeries series;
+    private final Histogram histogram;
+    private long claims;
+    private long failures;
+    private long claimWaitNanos;
+    private long maxClaimWaitNanos;
+
+    public Worker(PoolFacade pool, long sessionStart,
+        CountDownLatch startLatch, CountDownLatch endLatch, Recorder recorder) {
+      this.pool = pool;
+      this.sessionStart = sessionStart;
+      this.startLatch = startLatch;
+      this.endLatch = endLatch;
+      this.recorder = recorder;
+      this.series = new TimeSeries(sessionStart, DURATION_NANOS, BUCKET_NANOS);
+      this.histogram = LatencyHistograms.create();
+    }
+
+    @Override
+    public void run() {
+      try {
+        startLatch.await();
+        long deadline = sessionStart + DURATION_NANOS;
+        long start = recorder.begin();
+        while (start - deadline < 0) {
+          Object obj = null;
+          try {
+            obj = pool.claim();
+          } catch (Exception e) {
+            // Allocation failures surface as claim failures; counted below.
+          }
+          long wait = System.nanoTime() - start;
+          claimWaitNanos += wait;
+          maxClaimWaitNanos = Math.max(maxClaimWaitNanos, wait);
+          if (obj != null) {
+            claims++;
+            pool.release(obj);
+          } else {
+            failures++;
+          }
+          long end = recorder.record(start);
+          series.record(end, end - start);
+          histogram.recordValue(end - start);
+          start = end;
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+      endLatch.countDown();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String titleFormat =
+        "Slow Allocation Benchmark [distribution=%3$s, failureRate=%4$s, threads=%5$s]";
+    HtmlChartsReporter chartReporter = new HtmlChartsReporter(
+        new Interpretor(), titleFormat);
+    chartReporter.addChartRender(new ThroughputChart("Throughput", "Allocation latency (ms)", "Ops/Sec"));
+    chartReporter.addChartRender(new LatencyHistogramChart("Latency Histograms", "Allocation latency (ms)"));
+    PrintingReporter printingReporter = new PrintingReporter();
+    WarmupPrintingReporter warmupReporter = new WarmupPrintingReporter();
+    ResultsStore resultsStore = new ResultsStore();
+    CsvJsonReporter dataReporter = new CsvJsonReporter();
+    PercentileReporter percentileReporter = new PercentileReporter(
+        new Interpretor(), titleFormat);
+
+    // Pre-heat the lot:
+    System.out.println("## Warmup");
+    BenchmarkRunner.run(
+        SlowAllocationBenchmark.class,
+        warmupReporter, 1, 0);
+
+    // The real run:
+    System.out.println("## Benchmark");
+    LatencyHistograms.clear();
+    BenchmarkRunner.run(
+        SlowAllocationBenchmark.class,
+        printingReporter,
+        new TeeReporter(chartReporter, resultsStore, dataReporter, percentileReporter),
+        5, 0);
+
+    String report = percentileReporter.addTo(chartReporter.generateReport());
+    File file = new File("slow-allocation-results.html");
+    if (!file.exists()) file.createNewFile();
+    Files.write(file.toPath(), report.getBytes("UTF-8"));
+    dataReporter.writeFiles("slow-allocation-results");
+    percentileReporter.writeFiles("slow-allocation-results");
+  }
+
+  private static final class Interpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Slow Allocation Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[1];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return String.valueOf(args[0]);
+    }
+  }
+}
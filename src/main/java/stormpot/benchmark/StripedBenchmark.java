@@ -0,0 +1,72 @@
+package stormpot.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.benchkit.Benchmark;
+import org.benchkit.Param;
+import org.benchkit.Recorder;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+
+/**
+ * The {@link MultiThreadedBenchmark} workloads on a pool that is split into
+ * a number of independent BlazePools. One stripe is the same as a plain
+ * BlazePool.
+ */
+public class StripedBenchmark implements Benchmark {
+  private final Object[] args;
+  private final int stripes;
+  private final int threads;
+  private final int poolSize;
+  private ExecutorService executor;
+  private PoolFacade pool;
+
+  public StripedBenchmark(
+      @Param(value = "stripes", defaults = "1,2,4,8") int stripes,
+      @Param(value = "threads", defaults = "1,2,4,8,16") int threads,
+      @Param(value = "poolSize", defaults = "16") int poolSize) {
+    this.args = new Object[] {stripes, threads, poolSize};
+    this.stripes = stripes;
+    this.threads = threads;
+    this.poolSize = poolSize;
+  }
+
+  @Override
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(threads);
+    pool = PoolFactory.createStriped(stripes, poolSize, 1000);
+  }
+
+  @Override
+  public void runSession(Recorder recorder) throws Exception {
+    MultiThreadedBenchmark.runWorkers(pool, executor, threads, recorder, args);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    PoolFactory.striped.shutdown(pool);
+    executor.shutdown();
+  }
+
+  public static void main(String[] args) throws Exception {
+    ReportingRunner.run(StripedBenchmark.class, new Interpretor(),
+        "Striped Pool Benchmark [poolSize=%3$s]",
+        "Threads", 4, "striped-results");
+  }
+
+  private static final class Interpretor implements DataInterpretor {
+    public String getBenchmarkName(Object[] args) {
+      return "Striped Pool Benchmark";
+    }
+
+    @SuppressWarnings("unchecked")
+    public Comparable<Object> getXvalue(Object[] args) {
+      return (Comparable<Object>) args[1];
+    }
+
+    @Override
+    public String getSeriesName(Object[] args) {
+      return "stripes=" + args[0];
+    }
+  }
+}
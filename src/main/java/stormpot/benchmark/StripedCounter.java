@@ -0,0 +1,43 @@
+package stormpot.benchmark;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that threads can add to without contending on the same cache
+ * line, at the price of a slower {@link #sum()}. Every thread adds to the
+ * cell picked by the hash of its id, and the cells are a cache line apart.
+ */
+public class StripedCounter {
+  private static final int CELL_STRIDE = 8; // 64 bytes of longs
+  private static final int CELLS = findNextPowerOfTwo(
+      Runtime.getRuntime().availableProcessors() * 2);
+
+  private final AtomicLongArray cells =
+      new AtomicLongArray(CELLS * CELL_STRIDE);
+
+  private static int findNextPowerOfTwo(int value) {
+    return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+  }
+
+  private static int cellIndex() {
+    long id = Thread.currentThread().getId();
+    int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+    return ((hash ^ (hash >>> 16)) & (CELLS - 1)) * CELL_STRIDE;
+  }
+
+  public void add(long value) {
+    cells.getAndAdd(cellIndex(), value);
+  }
+
+  public void increment() {
+    add(1);
+  }
+
+  public long sum() {
+    long sum = 0;
+    for (int i = 0; i < CELLS; i++) {
+      sum += cells.get(i * CELL_STRIDE);
+    }
+    return sum;
+  }
+}
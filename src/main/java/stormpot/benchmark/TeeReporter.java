@@ -0,0 +1,23 @@
+package stormpot.benchmark;
+
+import org.benchkit.Recorder;
+import org.benchkit.Reporter;
+
+/**
+ * Passes every report on to all of the given reporters, for when a run
+ * needs more reporters than the BenchmarkRunner takes.
+ */
+public class TeeReporter implements Reporter {
+  private final Reporter[] reporters;
+
+  public TeeReporter(Reporter... reporters) {
+    this.reporters = reporters;
+  }
+
+  @Override
+  public void report(String name, Object[] args, Recorder recorder) {
+    for (Reporter reporter : reporters) {
+      reporter.report(name, args, recorder);
+    }
+  }
+}
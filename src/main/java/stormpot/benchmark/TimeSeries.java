@@ -0,0 +1,72 @@
+package stormpot.benchmark;
+
+/**
+ * Counts operations and their latencies in fixed-width time buckets, so a
+ * benchmark can show how throughput and latency change over a session.
+ * Each worker records into its own series, and the series are added
+ * together when the workers are done.
+ */
+public class TimeSeries {
+  private final long startNanos;
+  private final long bucketNanos;
+  private final long[] ops;
+  private final long[] latencyNanos;
+  private final long[] maxLatencyNanos;
+
+  public TimeSeries(long startNanos, long durationNanos, long bucketNanos) {
+    this.startNanos = startNanos;
+    this.bucketNanos = bucketNanos;
+    int buckets = (int) (durationNanos / bucketNanos) + 1;
+    ops = new long[buckets];
+    latencyNanos = new long[buckets];
+    maxLatencyNanos = new long[buckets];
+  }
+
+  /**
+   * Record an operation that ended at the given time. Operations that end
+   * after the duration of the series all go in the last bucket.
+   */
+  public void record(long endNanos, long latency) {
+    int bucket = bucketOf(endNanos);
+    ops[bucket]++;
+    latencyNanos[bucket] += latency;
+    maxLatencyNanos[bucket] = Math.max(maxLatencyNanos[bucket], latency);
+  }
+
+  public void add(TimeSeries other) {
+    for (int i = 0; i < ops.length; i++) {
+      ops[i] += other.ops[i];
+      latencyNanos[i] += other.latencyNanos[i];
+      maxLatencyNanos[i] = Math.max(maxLatencyNanos[i], other.maxLatencyNanos[i]);
+    }
+  }
+
+  public int bucketOf(long timeNanos) {
+    long bucket = Math.max(0, (timeNanos - startNanos) / bucketNanos);
+    return (int) Math.min(bucket, ops.length - 1);
+  }
+
+  public int size() {
+    return ops.length;
+  }
+
+  public long getBucketNanos() {
+    return bucketNanos;
+  }
+
+  public long getOps(int bucket) {
+    return ops[bucket];
+  }
+
+  public double getOpsPerSecond(int bucket) {
+    return ops[bucket] * 1e9 / bucketNanos;
+  }
+
+  public double getMeanLatencyNanos(int bucket) {
+    return ops[bucket] == 0 ? 0 : latencyNanos[bucket] / (double) ops[bucket];
+  }
+
+  public long getMaxLatencyNanos(int bucket) {
+    return maxLatencyNanos[bucket];
+  }
+}
@@ -0,0 +1,38 @@
+package stormpot.benchmark;
+
+import org.HdrHistogram.Histogram;
+import org.benchkit.Recorder;
+import org.benchkit.htmlchartsreporter.DataInterpretor;
+
+/**
+ * Charts the throughput of only the timed operations, as the number of
+ * operations in the {@link LatencyHistograms} over the sum of their
+ * latencies, one bar for every series and x-value.
+ * <p>
+ * The throughput the Recorder reports counts all the time from
+ * {@link Recorder#begin()} to the last recorded operation, which is wrong
+ * for benchmarks that do untimed work between the timed operations, like
+ * the claims that only set up the releases in the
+ * {@link SingleThreadedBenchmark}.
+ */
+public class TimedThroughputReporter extends BarChartReporter {
+
+  public TimedThroughputReporter(DataInterpretor interpretor, String titleFormat) {
+    super(interpretor, titleFormat, "%,.0f ops/s");
+  }
+
+  @Override
+  protected String chartName() {
+    return "Timed Throughput";
+  }
+
+  @Override
+  protected Double valueOf(Object[] args, Recorder recorder) {
+    Histogram histogram = LatencyHistograms.get(args);
+    if (histogram == null || histogram.getTotalCount() == 0) {
+      return null;
+    }
+    // The sum of the latencies is the time spent in timed operations.
+    return 1e9 / histogram.getMean();
+  }
+}
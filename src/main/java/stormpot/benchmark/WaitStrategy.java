@@ -0,0 +1,51 @@
+package stormpot.benchmark;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a thread does while it waits for a queue to have room or elements.
+ * The strategies trade handoff latency against burnt CPU time.
+ * <p>
+ * Callers count their failed attempts, starting from zero, and pass the
+ * count to {@link #idle(int)} so the strategies can back off.
+ */
+public enum WaitStrategy {
+  spin {
+    @Override
+    public void idle(int attempt) {
+    }
+  },
+  yield {
+    @Override
+    public void idle(int attempt) {
+      Thread.yield();
+    }
+  },
+  backoff {
+    @Override
+    public void idle(int attempt) {
+      if (attempt < SPIN_ATTEMPTS) {
+        return;
+      }
+      if (attempt < SPIN_ATTEMPTS + YIELD_ATTEMPTS) {
+        Thread.yield();
+        return;
+      }
+      int shift = Math.min(attempt - SPIN_ATTEMPTS - YIELD_ATTEMPTS, MAX_PARK_SHIFT);
+      LockSupport.parkNanos(1L << shift);
+    }
+  },
+  park {
+    @Override
+    public void idle(int attempt) {
+      LockSupport.parkNanos(1);
+    }
+  };
+
+  private static final int SPIN_ATTEMPTS = 100;
+  private static final int YIELD_ATTEMPTS = 100;
+  // Parks for at most 2^20 ns, or about a millisecond.
+  private static final int MAX_PARK_SHIFT = 20;
+
+  public abstract void idle(int attempt);
+}
@@ -0,0 +1,34 @@
+package stormpot.benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stormpot.benchmark.PoolFacade;
+
+/**
+ * The JMH equivalent of the {@link stormpot.benchmark.MultiThreadedBenchmark}
+ * workers: every thread claims and immediately releases objects from the
+ * same pool. Run it with "-t" to pick the number of threads.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class ClaimRelease {
+
+  @Benchmark
+  public Object claimRelease(PoolState state) throws Exception {
+    PoolFacade pool = state.facade;
+    Object obj = pool.claim();
+    pool.release(obj);
+    return obj;
+  }
+}
@@ -0,0 +1,95 @@
+package stormpot.benchmark.jmh;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stormpot.benchmark.PoolFacade;
+import stormpot.benchmark.PoolFactory;
+import uk.co.real_logic.queues.OneToOneConcurrentArrayQueue3;
+
+/**
+ * The JMH equivalent of {@link stormpot.benchmark.MessagePassingBenchmark}:
+ * one thread claims objects and passes them through a queue to another
+ * thread, that releases them.
+ * <p>
+ * Neither side is allowed to block, because JMH must be able to stop the
+ * two threads independently at the end of an iteration. The claimer only
+ * claims while at least two objects are guaranteed to be left in the pool,
+ * so a stalled releaser can never make it wait on an exhausted pool.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class MessagePassing {
+
+  @State(Scope.Group)
+  public static class HandOff {
+    @Param({"stack", "generic", "queue", "blaze", "tlcache", "furious", "ring", "clq", "deque", "striped", "nopool"})
+    public PoolFactory pool;
+
+    @Param({"8", "1024"})
+    public int poolSize;
+
+    @Param({"1000"})
+    public long objTtl;
+
+    PoolFacade facade;
+    Queue<Object> queue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      facade = pool.create(poolSize, objTtl);
+      queue = new OneToOneConcurrentArrayQueue3<Object>(poolSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+      Object obj;
+      while (null != (obj = queue.poll())) {
+        facade.release(obj);
+      }
+      pool.shutdown(facade);
+    }
+  }
+
+  @Benchmark
+  @Group("handOff")
+  @GroupThreads(1)
+  public Object claimer(HandOff state) throws Exception {
+    if (state.queue.size() < state.poolSize - 2) {
+      Object obj = state.facade.claim();
+      state.queue.offer(obj);
+      return obj;
+    }
+    return null;
+  }
+
+  @Benchmark
+  @Group("handOff")
+  @GroupThreads(1)
+  public Object releaser(HandOff state) throws Exception {
+    Object obj = state.queue.poll();
+    if (obj != null) {
+      state.facade.release(obj);
+    }
+    return obj;
+  }
+}
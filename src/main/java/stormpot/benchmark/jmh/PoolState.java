@@ -0,0 +1,39 @@
+package stormpot.benchmark.jmh;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import stormpot.benchmark.PoolFacade;
+import stormpot.benchmark.PoolFactory;
+
+/**
+ * One pool shared by all the benchmark threads, created from the
+ * {@link PoolFactory} entry given by the "pool" parameter.
+ */
+@State(Scope.Benchmark)
+public class PoolState {
+  @Param({"stack", "generic", "queue", "blaze", "tlcache", "furious", "ring", "clq", "deque", "striped", "nopool"})
+  public PoolFactory pool;
+
+  @Param({"10"})
+  public int poolSize;
+
+  @Param({"1000"})
+  public long objTtl;
+
+  public PoolFacade facade;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    facade = pool.create(poolSize, objTtl);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    pool.shutdown(facade);
+  }
+}